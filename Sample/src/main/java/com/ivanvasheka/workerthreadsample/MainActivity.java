@@ -8,17 +8,19 @@ import android.widget.ProgressBar;
 import android.widget.TextView;
 
 import com.ivanvasheka.workerthread.Event;
-import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.Subscribe;
+import com.ivanvasheka.workerthread.TaskHandle;
 import com.ivanvasheka.workerthread.WorkerThread;
 
 import java.util.Random;
 
-public class MainActivity extends AppCompatActivity implements View.OnClickListener, EventListener {
+public class MainActivity extends AppCompatActivity implements View.OnClickListener {
 
     public static final String TAG = "WT-SAMPLE";
 
     TextView textView;
     ProgressBar progressBar;
+    TaskHandle simpleTask;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -35,11 +37,8 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     protected void onResume() {
         super.onResume();
 
-        if (!WorkerThread.get().isRunning(Task2.TAG)) {
-            WorkerThread.get().execute(new Task2(), Task2.TAG);
-        } else {
-            Log.d(Task2.TAG, "Task2 is still running no need to start new one.");
-        }
+        // Does not start a new Task2 while the previous one is still running.
+        WorkerThread.get().executeIfNotRunning(Task2.TAG, new Task2());
 
         WorkerThread.get().subscribe(this);
     }
@@ -57,25 +56,29 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
             case R.id.execute_simple:
                 progressBar.setIndeterminate(true);
                 Log.e(TAG, "Start in " + MainActivity.this);
-                WorkerThread.get().execute(new Task());
+                if (simpleTask != null && simpleTask.cancel(true)) {
+                    Log.e(TAG, "Previous task cancelled in " + MainActivity.this);
+                }
+                simpleTask = WorkerThread.get().execute(new Task(), WorkerThread.PRIORITY_HIGH);
                 break;
         }
     }
 
-    @Override
+    @Subscribe
+    public void onCustomEvent(CustomEvent event) {
+        Log.e(TAG, "Custom event with T = " + event.T);
+    }
+
+    @Subscribe
     public void onEvent(Event event) {
         Log.e(TAG, "onEvent " + event.toString() + " in " + MainActivity.this);
 
-        if (event instanceof CustomEvent) {
-            Log.e(TAG, "Custom event with T = " + ((CustomEvent) event).T);
-        }
-
         if (progressBar.isIndeterminate()) {
             progressBar.setIndeterminate(false);
         }
-        if (event.getNumber() != null) {
-            textView.setText(String.valueOf(event.getNumber()));
-            progressBar.setProgress(event.getNumber().intValue());
+        if (event.hasNumber()) {
+            textView.setText(String.valueOf(event.getInt()));
+            progressBar.setProgress(event.getInt());
         } else {
             Log.e(TAG, "Done in " + MainActivity.this);
 
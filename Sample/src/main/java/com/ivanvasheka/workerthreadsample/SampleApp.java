@@ -3,6 +3,9 @@ package com.ivanvasheka.workerthreadsample;
 import android.app.Application;
 import android.os.StrictMode;
 
+import com.ivanvasheka.workerthread.Config;
+import com.ivanvasheka.workerthread.WorkerThread;
+
 public class SampleApp extends Application {
 
     @Override
@@ -17,5 +20,9 @@ public class SampleApp extends Application {
                 .detectAll()
                 .penaltyLog()
                 .build());
+
+        WorkerThread.init(Config.builder()
+                .withSubscriberIndex(new SampleSubscriberIndex())
+                .build());
     }
 }
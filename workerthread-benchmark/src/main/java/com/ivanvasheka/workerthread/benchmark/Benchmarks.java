@@ -0,0 +1,75 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Config;
+import com.ivanvasheka.workerthread.Event;
+import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.MainThreadDispatcher;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+/**
+ * Shared setup of the benchmarks. JMH runs every benchmark in its own forked JVM, so each
+ * benchmark class is free to initialize {@link WorkerThread} the way it needs.
+ */
+final class Benchmarks {
+
+    private static boolean initialized;
+
+    private Benchmarks() {
+    }
+
+    /**
+     * Initializes WorkerThread once per JVM, later calls from other benchmark states are ignored.
+     */
+    static synchronized void init(Config config) {
+        if (!initialized) {
+            WorkerThread.init(config);
+            initialized = true;
+        }
+    }
+
+    /**
+     * Initializes WorkerThread with {@link DirectDispatcher}, so main thread deliveries measure
+     * the dispatch core rather than the handoff to another thread.
+     */
+    static void initDirect() {
+        init(Config.builder().withMainThreadDispatcher(new DirectDispatcher()).build());
+    }
+
+    /**
+     * Runs main thread deliveries right in the posting thread. Runnables are still run one by
+     * one as {@link MainThreadDispatcher} requires.
+     */
+    static final class DirectDispatcher implements MainThreadDispatcher {
+
+        @Override
+        public synchronized void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public boolean isDispatchThread() {
+            // Every thread runs deliveries, so none of them may wait for the others.
+            return true;
+        }
+    }
+
+    /**
+     * Stores the number of the received event, which keeps the delivery from being optimized
+     * away. Separate subclasses are used as targets of targeted events.
+     */
+    static class SinkListener implements EventListener {
+
+        volatile int last;
+
+        @Override
+        public void onEvent(Event event) {
+            last = event.getInt(0);
+        }
+    }
+
+    static final class TargetListener extends SinkListener {
+    }
+
+    static final class OtherListener extends SinkListener {
+    }
+}
@@ -0,0 +1,60 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Event;
+import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Several threads posting at once. Source thread events show the cost of the shared subscriber
+ * snapshot and backlog counter alone, main thread events add the serial dispatcher.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class ContendedPostBenchmark {
+
+    private EventListener listener;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.initDirect();
+        listener = new Benchmarks.TargetListener();
+        WorkerThread.get().subscribe(listener);
+    }
+
+    @TearDown
+    public void tearDown() {
+        WorkerThread.get().unsubscribe(listener);
+    }
+
+    @Benchmark
+    public void sourceThread() {
+        Event.to(Benchmarks.TargetListener.class).withNumber(1).useSourceThread().post();
+    }
+
+    @Benchmark
+    public void mainThread() {
+        Event event = Event.obtain(Benchmarks.TargetListener.class);
+        event.setNumber(1);
+        WorkerThread.get().post(event);
+    }
+}
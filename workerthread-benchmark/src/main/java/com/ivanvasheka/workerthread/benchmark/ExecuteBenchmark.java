@@ -0,0 +1,113 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Config;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overhead of {@link WorkerThread#execute(Runnable)} compared with a raw executor of the same
+ * size. Every invocation submits a batch of empty tasks and waits until all of them have run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ExecuteBenchmark {
+
+    private static final int BATCH = 100;
+    private static final int POOL_SIZE = 4;
+    private static final int QUEUE_CAPACITY = 1024;
+
+    private final String[] tags = new String[8];
+    private ThreadPoolExecutor raw;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.init(Config.builder()
+                .withCorePoolSize(POOL_SIZE)
+                .withMaxPoolSize(POOL_SIZE)
+                .withQueueType(Config.QUEUE_FIFO)
+                .withQueueCapacity(QUEUE_CAPACITY)
+                .build());
+        raw = new ThreadPoolExecutor(POOL_SIZE, POOL_SIZE, 30, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(QUEUE_CAPACITY));
+        for (int i = 0; i < tags.length; i++) {
+            tags[i] = "tag" + i;
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        raw.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void rawExecutor() throws InterruptedException {
+        CountDown task = new CountDown(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            raw.execute(task);
+        }
+        task.await();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void execute() throws InterruptedException {
+        CountDown task = new CountDown(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            WorkerThread.get().execute(task);
+        }
+        task.await();
+    }
+
+    /**
+     * Tags are shared by several tasks in flight, as with repeated requests of the same kind.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void executeTagged() throws InterruptedException {
+        CountDown task = new CountDown(BATCH);
+        for (int i = 0; i < BATCH; i++) {
+            WorkerThread.get().execute(task, tags[i & (tags.length - 1)]);
+        }
+        task.await();
+    }
+
+    private static final class CountDown implements Runnable {
+
+        private final CountDownLatch latch;
+
+        CountDown(int count) {
+            latch = new CountDownLatch(count);
+        }
+
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+
+        void await() throws InterruptedException {
+            latch.await();
+        }
+    }
+}
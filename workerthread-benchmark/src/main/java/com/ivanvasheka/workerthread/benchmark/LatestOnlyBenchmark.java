@@ -0,0 +1,90 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Config;
+import com.ivanvasheka.workerthread.Event;
+import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Storm of {@link Event#TYPE_LATEST_ONLY} events posted by several threads. Uses the default
+ * main thread dispatcher, so while the main thread is busy the events are conflated instead of
+ * queued.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Threads(4)
+@Fork(1)
+public class LatestOnlyBenchmark {
+
+    /**
+     * Target is not subscribed, every event replaces the stored one.
+     */
+    @State(Scope.Benchmark)
+    public static class Stored {
+
+        @Setup
+        public void setUp() {
+            Benchmarks.init(Config.defaults());
+        }
+
+        @TearDown
+        public void tearDown() {
+            WorkerThread.get().invalidate(null);
+        }
+    }
+
+    /**
+     * Target is subscribed, every event replaces the one waiting for main thread delivery.
+     */
+    @State(Scope.Benchmark)
+    public static class Subscribed {
+
+        private EventListener listener;
+
+        @Setup
+        public void setUp() {
+            Benchmarks.init(Config.defaults());
+            listener = new Benchmarks.TargetListener();
+            WorkerThread.get().subscribe(listener);
+        }
+
+        @TearDown
+        public void tearDown() {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Benchmark
+    public void stored(Stored state) {
+        post(Benchmarks.OtherListener.class);
+    }
+
+    @Benchmark
+    public void subscribed(Subscribed state) {
+        post(Benchmarks.TargetListener.class);
+    }
+
+    private static void post(Class<?> subscriber) {
+        Event event = Event.obtain(subscriber);
+        event.setType(Event.TYPE_LATEST_ONLY);
+        event.setNumber(1);
+        WorkerThread.get().post(event);
+    }
+}
@@ -0,0 +1,80 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Event;
+import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of delivering stored events as their count grows. Before every invocation events are
+ * posted while the target is not subscribed, the measured subscription delivers all of them.
+ * Events of other subscribers stay in the store during the whole run, so the drain also has to
+ * skip them.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PendingEventsBenchmark {
+
+    /**
+     * Count of events delivered by each subscription.
+     */
+    @Param({"10", "100", "1000"})
+    public int pending;
+
+    /**
+     * Count of events that wait for a subscriber that never subscribes.
+     */
+    @Param({"0", "1000"})
+    public int unrelated;
+
+    private EventListener listener;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Benchmarks.initDirect();
+        listener = new Benchmarks.TargetListener();
+        for (int i = 0; i < unrelated; i++) {
+            Event event = Event.obtain(Benchmarks.OtherListener.class);
+            event.setNumber(i);
+            WorkerThread.get().post(event);
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void postPending() {
+        for (int i = 0; i < pending; i++) {
+            Event event = Event.obtain(Benchmarks.TargetListener.class);
+            event.setNumber(i);
+            WorkerThread.get().post(event);
+        }
+    }
+
+    @TearDown(Level.Invocation)
+    public void unsubscribe() {
+        WorkerThread.get().unsubscribe(listener);
+    }
+
+    @Benchmark
+    public void deliverPending() {
+        WorkerThread.get().subscribe(listener);
+    }
+}
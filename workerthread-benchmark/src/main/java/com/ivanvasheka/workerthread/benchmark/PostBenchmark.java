@@ -0,0 +1,91 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Event;
+import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of {@link WorkerThread#post(Event)} with no backlog, when the event is delivered right
+ * from the posting thread: an event targeted to one subscriber versus an event broadcast to all.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PostBenchmark {
+
+    /**
+     * Total count of subscribers, only one of them receives targeted events.
+     */
+    @Param({"1", "10", "100"})
+    public int subscribers;
+
+    private final List<EventListener> listeners = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        Benchmarks.initDirect();
+        listeners.add(new Benchmarks.TargetListener());
+        for (int i = 1; i < subscribers; i++) {
+            listeners.add(new Benchmarks.OtherListener());
+        }
+        for (EventListener listener : listeners) {
+            WorkerThread.get().subscribe(listener);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (EventListener listener : listeners) {
+            WorkerThread.get().unsubscribe(listener);
+        }
+        listeners.clear();
+    }
+
+    @Benchmark
+    public void targeted() {
+        Event event = Event.obtain(Benchmarks.TargetListener.class);
+        event.setNumber(1);
+        WorkerThread.get().post(event);
+    }
+
+    @Benchmark
+    public void broadcast() {
+        Event event = Event.obtain();
+        event.setNumber(1);
+        WorkerThread.get().post(event);
+    }
+
+    /**
+     * Events built with {@link Event#to(Class)} are allocated and never recycled, shows
+     * the allocation the pool saves.
+     */
+    @Benchmark
+    public void targetedWithoutPool() {
+        Event.to(Benchmarks.TargetListener.class).withNumber(1).post();
+    }
+
+    @Benchmark
+    public void targetedWithPooledBuilder() {
+        Event.obtainTo(Benchmarks.TargetListener.class).withNumber(1).post();
+    }
+}
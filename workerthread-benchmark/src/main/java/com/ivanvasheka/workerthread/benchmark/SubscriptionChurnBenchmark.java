@@ -0,0 +1,100 @@
+package com.ivanvasheka.workerthread.benchmark;
+
+import com.ivanvasheka.workerthread.Event;
+import com.ivanvasheka.workerthread.EventListener;
+import com.ivanvasheka.workerthread.WorkerThread;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of subscribing and unsubscribing while other subscribers are present, alone and while
+ * other threads keep posting to the churning subscriber.
+ */
+@State(Scope.Group)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubscriptionChurnBenchmark {
+
+    /**
+     * Count of subscribers that stay subscribed during the whole run.
+     */
+    @Param({"0", "10", "100"})
+    public int subscribers;
+
+    private final List<EventListener> listeners = new ArrayList<>();
+    private EventListener churning;
+
+    @Setup
+    public void setUp() {
+        Benchmarks.initDirect();
+        for (int i = 0; i < subscribers; i++) {
+            listeners.add(new Benchmarks.OtherListener());
+        }
+        for (EventListener listener : listeners) {
+            WorkerThread.get().subscribe(listener);
+        }
+        churning = new Benchmarks.TargetListener();
+    }
+
+    @TearDown
+    public void tearDown() {
+        for (EventListener listener : listeners) {
+            WorkerThread.get().unsubscribe(listener);
+        }
+        listeners.clear();
+        WorkerThread.get().unsubscribe(churning);
+        WorkerThread.get().invalidate(null);
+    }
+
+    /**
+     * Own group of one thread, the state is shared by the threads of a group.
+     */
+    @Benchmark
+    @Group("subscribeUnsubscribe")
+    @GroupThreads(1)
+    public void subscribeUnsubscribe() {
+        WorkerThread.get().subscribe(churning);
+        WorkerThread.get().unsubscribe(churning);
+    }
+
+    @Benchmark
+    @Group("churnWhilePosting")
+    @GroupThreads(1)
+    public void churn() {
+        WorkerThread.get().subscribe(churning);
+        WorkerThread.get().unsubscribe(churning);
+    }
+
+    /**
+     * Latest only, so the events posted while the target is unsubscribed do not pile up.
+     */
+    @Benchmark
+    @Group("churnWhilePosting")
+    @GroupThreads(3)
+    public void post() {
+        Event event = Event.obtain(Benchmarks.TargetListener.class);
+        event.setType(Event.TYPE_LATEST_ONLY);
+        event.setNumber(1);
+        WorkerThread.get().post(event);
+    }
+}
@@ -0,0 +1,283 @@
+package com.ivanvasheka.workerthread.compiler;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.Types;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+
+/**
+ * Generates the subscriber index: for every class with {@code @Subscribe} methods, a
+ * {@code SubscriberMethods} subclass that invokes the methods directly. The fully qualified name
+ * of the index class is passed with the {@value #OPTION_INDEX} option.
+ */
+public final class SubscriberIndexProcessor extends AbstractProcessor {
+
+    static final String OPTION_INDEX = "workerthread.index";
+
+    private static final String SUBSCRIBE = "com.ivanvasheka.workerthread.Subscribe";
+    private static final String EVENT = "com.ivanvasheka.workerthread.Event";
+
+    private boolean written;
+
+    @Override
+    public Set<String> getSupportedAnnotationTypes() {
+        return Collections.singleton(SUBSCRIBE);
+    }
+
+    @Override
+    public Set<String> getSupportedOptions() {
+        return Collections.singleton(OPTION_INDEX);
+    }
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (annotations.isEmpty() || written) {
+            return false;
+        }
+
+        String index = processingEnv.getOptions().get(OPTION_INDEX);
+        if (index == null) {
+            error(null, "@Subscribe methods found, but no index class name is passed with -A"
+                    + OPTION_INDEX + "=<fully qualified name>.");
+            return false;
+        }
+        int lastDot = index.lastIndexOf('.');
+        String indexPackage = lastDot > 0 ? index.substring(0, lastDot) : "";
+        String indexName = index.substring(lastDot + 1);
+
+        TypeElement event = processingEnv.getElementUtils().getTypeElement(EVENT);
+        if (event == null) {
+            error(null, EVENT + " is not on the classpath.");
+            return false;
+        }
+
+        // Sorted, so the generated source does not change between builds.
+        Map<String, TypeElement> subscribers = new TreeMap<>();
+        Set<Element> originating = new LinkedHashSet<>();
+        boolean valid = true;
+        for (TypeElement annotation : annotations) {
+            for (Element element : roundEnv.getElementsAnnotatedWith(annotation)) {
+                valid &= check(element, event.asType(), indexPackage);
+                TypeElement type = (TypeElement) element.getEnclosingElement();
+                subscribers.put(type.getQualifiedName().toString(), type);
+                originating.add(type);
+            }
+        }
+        if (!valid) {
+            return false;
+        }
+
+        Map<TypeElement, List<ExecutableElement>> methods = new LinkedHashMap<>();
+        for (TypeElement type : subscribers.values()) {
+            List<ExecutableElement> inherited = collectMethods(type, event.asType(), indexPackage);
+            if (inherited == null) {
+                return false;
+            }
+            methods.put(type, inherited);
+        }
+
+        try {
+            write(index, indexPackage, indexName, methods, originating);
+            written = true;
+        } catch (IOException e) {
+            error(null, "Could not write " + index + ": " + e.getMessage());
+        }
+        return false;
+    }
+
+    /**
+     * Collects methods of the class and its superclasses, methods overridden in a subclass are
+     * taken once.
+     *
+     * @return methods, or null if some inherited method is not valid.
+     */
+    private List<ExecutableElement> collectMethods(TypeElement type, TypeMirror event,
+            String indexPackage) {
+        List<ExecutableElement> result = new ArrayList<>();
+        Set<String> signatures = new HashSet<>();
+        for (TypeElement current = type; current != null; current = superclassOf(current)) {
+            for (Element element : current.getEnclosedElements()) {
+                if (element.getKind() != ElementKind.METHOD || !isSubscribe(element)) {
+                    continue;
+                }
+                if (current != type && !check(element, event, indexPackage)) {
+                    return null;
+                }
+
+                ExecutableElement method = (ExecutableElement) element;
+                String signature =
+                        method.getSimpleName() + "(" + erasure(parameterOf(method)) + ")";
+                if (signatures.add(signature)) {
+                    result.add(method);
+                }
+            }
+        }
+        return result;
+    }
+
+    private boolean check(Element element, TypeMirror event, String indexPackage) {
+        ExecutableElement method = (ExecutableElement) element;
+        Set<Modifier> modifiers = method.getModifiers();
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.STATIC)) {
+            error(method, "@Subscribe method must be public and not static.");
+            return false;
+        }
+
+        List<? extends VariableElement> parameters = method.getParameters();
+        Types types = processingEnv.getTypeUtils();
+        if (parameters.size() != 1
+                || parameters.get(0).asType().getKind() != TypeKind.DECLARED
+                || !types.isAssignable(types.erasure(parameters.get(0).asType()), event)) {
+            error(method, "@Subscribe method must have a single Event parameter.");
+            return false;
+        }
+
+        boolean samePackage = packageOf(method).equals(indexPackage);
+        for (Element type = method.getEnclosingElement(); type instanceof TypeElement;
+                type = type.getEnclosingElement()) {
+            Set<Modifier> typeModifiers = type.getModifiers();
+            if (typeModifiers.contains(Modifier.PRIVATE)
+                    || !samePackage && !typeModifiers.contains(Modifier.PUBLIC)) {
+                error(method, "Class with @Subscribe methods must be accessible from the index "
+                        + "package " + indexPackage + ".");
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void write(String index, String indexPackage, String indexName,
+            Map<TypeElement, List<ExecutableElement>> subscribers, Set<Element> originating)
+            throws IOException {
+        JavaFileObject file = processingEnv.getFiler()
+                .createSourceFile(index, originating.toArray(new Element[originating.size()]));
+        try (Writer out = file.openWriter()) {
+            if (!indexPackage.isEmpty()) {
+                out.write("package " + indexPackage + ";\n\n");
+            }
+            out.write("import com.ivanvasheka.workerthread.Event;\n");
+            out.write("import com.ivanvasheka.workerthread.SubscriberIndex;\n");
+            out.write("import com.ivanvasheka.workerthread.SubscriberMethods;\n\n");
+            out.write("import java.util.HashMap;\n");
+            out.write("import java.util.Map;\n\n");
+            out.write("/**\n * Generated by " + getClass().getSimpleName()
+                    + ", do not edit.\n */\n");
+            out.write("public final class " + indexName + " implements SubscriberIndex {\n\n");
+            out.write("    private static final Map<Class<?>, SubscriberMethods> INDEX"
+                    + " = new HashMap<>();\n\n");
+            out.write("    static {\n");
+            for (Map.Entry<TypeElement, List<ExecutableElement>> entry : subscribers.entrySet()) {
+                writeMethods(out, entry.getKey(), entry.getValue());
+            }
+            out.write("    }\n\n");
+            out.write("    @Override\n");
+            out.write("    public SubscriberMethods getSubscriberMethods"
+                    + "(Class<?> subscriberClass) {\n");
+            out.write("        return INDEX.get(subscriberClass);\n");
+            out.write("    }\n");
+            out.write("}\n");
+        }
+    }
+
+    private void writeMethods(Writer out, TypeElement type, List<ExecutableElement> methods)
+            throws IOException {
+        String subscriber = erasure(type.asType());
+        Set<String> eventTypes = new LinkedHashSet<>();
+        for (ExecutableElement method : methods) {
+            eventTypes.add(erasure(parameterOf(method)) + ".class");
+        }
+
+        out.write("        INDEX.put(" + subscriber + ".class, new SubscriberMethods(\n");
+        out.write("                " + join(eventTypes) + ") {\n");
+        out.write("            @Override\n");
+        out.write("            public void dispatch(Object subscriber, Event event) {\n");
+        out.write("                " + subscriber + " target = (" + subscriber + ") subscriber;\n");
+        for (ExecutableElement method : methods) {
+            String parameter = erasure(parameterOf(method));
+            String name = method.getSimpleName().toString();
+            if (EVENT.equals(parameter)) {
+                out.write("                target." + name + "(event);\n");
+            } else {
+                out.write("                if (event instanceof " + parameter + ") {\n");
+                out.write("                    target." + name + "((" + parameter + ") event);\n");
+                out.write("                }\n");
+            }
+        }
+        out.write("            }\n");
+        out.write("        });\n");
+    }
+
+    private boolean isSubscribe(Element element) {
+        for (AnnotationMirror mirror : element.getAnnotationMirrors()) {
+            Element annotation = mirror.getAnnotationType().asElement();
+            if (((TypeElement) annotation).getQualifiedName().contentEquals(SUBSCRIBE)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static TypeElement superclassOf(TypeElement type) {
+        TypeMirror superclass = type.getSuperclass();
+        return superclass.getKind() == TypeKind.DECLARED
+                ? (TypeElement) ((DeclaredType) superclass).asElement() : null;
+    }
+
+    private static TypeMirror parameterOf(ExecutableElement method) {
+        return method.getParameters().get(0).asType();
+    }
+
+    private String erasure(TypeMirror type) {
+        return processingEnv.getTypeUtils().erasure(type).toString();
+    }
+
+    private String packageOf(Element element) {
+        PackageElement pkg = processingEnv.getElementUtils().getPackageOf(element);
+        return pkg.getQualifiedName().toString();
+    }
+
+    private static String join(Set<String> values) {
+        StringBuilder builder = new StringBuilder();
+        for (String value : values) {
+            if (builder.length() > 0) {
+                builder.append(", ");
+            }
+            builder.append(value);
+        }
+        return builder.toString();
+    }
+
+    private void error(Element element, String message) {
+        processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR, message, element);
+    }
+}
@@ -0,0 +1,93 @@
+package com.ivanvasheka.workerthread.compiler;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SubscriberIndexProcessorTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void generatesDirectCallsForInheritedMethods() throws Exception {
+        File base = source("test/Base.java", "package test;\n"
+                + "import com.ivanvasheka.workerthread.*;\n"
+                + "public class Base {\n"
+                + "    @Subscribe public void onEvent(Event event) {}\n"
+                + "    @Subscribe public void onProgress(Progress event) {}\n"
+                + "}\n");
+        File screen = source("test/Screen.java", "package test;\n"
+                + "import com.ivanvasheka.workerthread.*;\n"
+                + "public class Screen extends Base {\n"
+                + "    @Override @Subscribe public void onProgress(Progress event) {}\n"
+                + "}\n");
+        File progress = source("test/Progress.java", "package test;\n"
+                + "public class Progress extends com.ivanvasheka.workerthread.Event {}\n");
+
+        StringWriter output = new StringWriter();
+        assertTrue(output.toString(), compile(output, base, screen, progress));
+
+        String index = new String(Files.readAllBytes(
+                new File(folder.getRoot(), "out/test/Index.java").toPath()),
+                Charset.forName("UTF-8"));
+        assertTrue(index.contains("INDEX.put(test.Screen.class"));
+        assertTrue(index.contains("target.onProgress((test.Progress) event);"));
+        assertTrue(index.contains("target.onEvent(event);"));
+        assertFalse(index.contains("getMethod"));
+    }
+
+    @Test
+    public void rejectsPrivateMethod() throws Exception {
+        File screen = source("test/Screen.java", "package test;\n"
+                + "import com.ivanvasheka.workerthread.*;\n"
+                + "public class Screen {\n"
+                + "    @Subscribe private void onEvent(Event event) {}\n"
+                + "}\n");
+
+        StringWriter output = new StringWriter();
+        assertFalse(compile(output, screen));
+        assertTrue(output.toString(), output.toString().contains("must be public"));
+    }
+
+    private File source(String path, String content) throws IOException {
+        File file = new File(folder.getRoot(), "src/" + path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(Charset.forName("UTF-8")));
+        return file;
+    }
+
+    private boolean compile(StringWriter output, File... sources) throws IOException {
+        File out = folder.newFolder("out");
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        StandardJavaFileManager files = compiler.getStandardFileManager(null, null, null);
+        Iterable<? extends JavaFileObject> units = files.getJavaFileObjects(sources);
+        JavaCompiler.CompilationTask task = compiler.getTask(output, files, null,
+                Arrays.asList("-d", out.getPath(), "-s", out.getPath(),
+                        "-classpath", System.getProperty("java.class.path"),
+                        "-A" + SubscriberIndexProcessor.OPTION_INDEX + "=test.Index"),
+                null, units);
+        task.setProcessors(Collections.singletonList(new SubscriberIndexProcessor()));
+        try {
+            return task.call();
+        } finally {
+            files.close();
+        }
+    }
+}
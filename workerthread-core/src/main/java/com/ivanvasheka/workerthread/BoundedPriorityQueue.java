@@ -0,0 +1,32 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.PriorityBlockingQueue;
+
+/**
+ * Priority queue that refuses new elements when it is full, so the executor starts additional
+ * threads and then applies its rejection policy, the same way as with bounded FIFO queues.
+ */
+final class BoundedPriorityQueue<E> extends PriorityBlockingQueue<E> {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int capacity;
+
+    BoundedPriorityQueue(int capacity) {
+        super(Math.min(capacity, 11));
+        this.capacity = capacity;
+    }
+
+    @Override
+    public synchronized boolean offer(@NonNull E element) {
+        // Elements are only removed concurrently, so the capacity can not be exceeded.
+        return size() < capacity && super.offer(element);
+    }
+
+    @Override
+    public int remainingCapacity() {
+        return Math.max(0, capacity - size());
+    }
+}
@@ -0,0 +1,12 @@
+package com.ivanvasheka.workerthread;
+
+/**
+ * Step that joins results of two tasks, see {@link TaskResult#combine(TaskResult, Combiner)}.
+ *
+ * @param <A> type of the first result.
+ * @param <B> type of the second result.
+ * @param <R> type of the joined result.
+ */
+public interface Combiner<A, B, R> {
+    R combine(A first, B second) throws Exception;
+}
@@ -0,0 +1,516 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.IntDef;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.File;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuration of the {@link WorkerThread} executor. Should be passed to
+ * {@link WorkerThread#init(Config)} before the first call to {@link WorkerThread#get()},
+ * for example in Application#onCreate() on Android.
+ */
+@SuppressWarnings("unused")
+public final class Config {
+
+    /**
+     * Tasks wait in a queue ordered by priority, see {@link WorkerThread#execute(Runnable, int)}.
+     * Tasks with equal priority are executed in order of submission.
+     */
+    public static final int QUEUE_PRIORITY = 0;
+
+    /**
+     * Tasks wait in a FIFO queue, priorities are ignored.
+     */
+    public static final int QUEUE_FIFO = 1;
+
+    /**
+     * Tasks do not wait in a queue, each task is handed to a free or a new thread.
+     * Queue capacity is ignored.
+     */
+    public static final int QUEUE_DIRECT = 2;
+
+    @IntDef({QUEUE_PRIORITY, QUEUE_FIFO, QUEUE_DIRECT})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface QueueType {
+    }
+
+    /**
+     * Rejected task is not executed, {@link java.util.concurrent.RejectedExecutionException}
+     * is thrown to the caller.
+     */
+    public static final int REJECT_ABORT = 0;
+
+    /**
+     * Rejected task is executed in the thread that submitted it.
+     */
+    public static final int REJECT_CALLER_RUNS = 1;
+
+    /**
+     * Rejected task is silently discarded.
+     */
+    public static final int REJECT_DISCARD = 2;
+
+    @IntDef({REJECT_ABORT, REJECT_CALLER_RUNS, REJECT_DISCARD})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface RejectionPolicy {
+    }
+
+    /**
+     * When a limit of stored events is reached, the oldest stored event is evicted.
+     */
+    public static final int EVICT_OLDEST = 0;
+
+    /**
+     * When a limit of stored events is reached, the posted event is not stored.
+     */
+    public static final int EVICT_NEWEST = 1;
+
+    /**
+     * When a limit of stored events is reached, the oldest stored event of the same class and for
+     * the same subscriber is evicted, so the latest event of every class is kept. If there is no
+     * such event, the oldest stored event is evicted.
+     */
+    public static final int EVICT_LATEST_PER_TYPE = 2;
+
+    @IntDef({EVICT_OLDEST, EVICT_NEWEST, EVICT_LATEST_PER_TYPE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface EvictionPolicy {
+    }
+
+    /**
+     * When the delivery queue of a subscriber is full, the posting thread waits until there is
+     * room. The thread that runs main thread deliveries is never blocked, the queue grows over
+     * the capacity instead.
+     */
+    public static final int OVERFLOW_BLOCK = 0;
+
+    /**
+     * When the delivery queue of a subscriber is full, the oldest queued event is dropped.
+     */
+    public static final int OVERFLOW_DROP_OLDEST = 1;
+
+    /**
+     * When the delivery queue of a subscriber is full, the posted event is dropped for the
+     * subscriber.
+     */
+    public static final int OVERFLOW_DROP_NEWEST = 2;
+
+    /**
+     * When the delivery queue of a subscriber is full, the oldest queued event of the same class
+     * is dropped, or the oldest queued event if there is none.
+     */
+    public static final int OVERFLOW_CONFLATE = 3;
+
+    @IntDef({OVERFLOW_BLOCK, OVERFLOW_DROP_OLDEST, OVERFLOW_DROP_NEWEST, OVERFLOW_CONFLATE})
+    @Retention(RetentionPolicy.SOURCE)
+    public @interface OverflowStrategy {
+    }
+
+    /**
+     * Priority of background threads, the same value as Android's
+     * Process.THREAD_PRIORITY_BACKGROUND.
+     */
+    public static final int THREAD_PRIORITY_BACKGROUND = 10;
+
+    // Defaults are the same as of Executors.newCachedThreadPool(), tasks are never rejected.
+    private int corePoolSize = 0;
+    private int maxPoolSize = Integer.MAX_VALUE;
+    private long keepAliveSeconds = 60;
+    @QueueType
+    private int queueType = QUEUE_DIRECT;
+    private int queueCapacity;
+    @RejectionPolicy
+    private int rejectionPolicy = REJECT_ABORT;
+    private int threadPriority = THREAD_PRIORITY_BACKGROUND;
+    @Nullable
+    private MainThreadDispatcher mainThreadDispatcher;
+    @Nullable
+    private MetricsSink metricsSink;
+    private boolean tracing;
+    private long slowDeliveryThresholdMillis;
+    @Nullable
+    private SlowDeliveryListener slowDeliveryListener;
+    private int slowSubscriberDemotion;
+    private final List<SubscriberIndex> subscriberIndexes = new ArrayList<>();
+    private int maxStoredEventsPerSubscriber;
+    private int maxStoredEvents;
+    private long storedEventTtlMillis;
+    @EvictionPolicy
+    private int evictionPolicy = EVICT_OLDEST;
+    @Nullable
+    private File journalFile;
+    private int deliveryQueueCapacity;
+    @OverflowStrategy
+    private int overflowStrategy = OVERFLOW_BLOCK;
+
+    private Config() {
+    }
+
+    /**
+     * @return configuration with default values.
+     */
+    @NonNull
+    public static Config defaults() {
+        return new Config();
+    }
+
+    int getCorePoolSize() {
+        return corePoolSize;
+    }
+
+    int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    long getKeepAliveSeconds() {
+        return keepAliveSeconds;
+    }
+
+    @QueueType
+    int getQueueType() {
+        return queueType;
+    }
+
+    int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    @RejectionPolicy
+    int getRejectionPolicy() {
+        return rejectionPolicy;
+    }
+
+    int getThreadPriority() {
+        return threadPriority;
+    }
+
+    @Nullable
+    MainThreadDispatcher getMainThreadDispatcher() {
+        return mainThreadDispatcher;
+    }
+
+    @Nullable
+    MetricsSink getMetricsSink() {
+        return metricsSink;
+    }
+
+    boolean isTracing() {
+        return tracing;
+    }
+
+    long getSlowDeliveryThresholdMillis() {
+        return slowDeliveryThresholdMillis;
+    }
+
+    @Nullable
+    SlowDeliveryListener getSlowDeliveryListener() {
+        return slowDeliveryListener;
+    }
+
+    int getSlowSubscriberDemotion() {
+        return slowSubscriberDemotion;
+    }
+
+    @NonNull
+    List<SubscriberIndex> getSubscriberIndexes() {
+        return subscriberIndexes;
+    }
+
+    int getMaxStoredEventsPerSubscriber() {
+        return maxStoredEventsPerSubscriber;
+    }
+
+    int getMaxStoredEvents() {
+        return maxStoredEvents;
+    }
+
+    long getStoredEventTtlMillis() {
+        return storedEventTtlMillis;
+    }
+
+    @EvictionPolicy
+    int getEvictionPolicy() {
+        return evictionPolicy;
+    }
+
+    @Nullable
+    File getJournalFile() {
+        return journalFile;
+    }
+
+    int getDeliveryQueueCapacity() {
+        return deliveryQueueCapacity;
+    }
+
+    @OverflowStrategy
+    int getOverflowStrategy() {
+        return overflowStrategy;
+    }
+
+    //region Builder pattern realisation
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static class Builder {
+
+        private Config config;
+
+        public Builder() {
+            config = new Config();
+        }
+
+        /**
+         * @param corePoolSize count of threads to keep even if they are idle, 0 by default.
+         * @return config builder.
+         */
+        public Builder withCorePoolSize(int corePoolSize) {
+            config.corePoolSize = corePoolSize;
+            return this;
+        }
+
+        /**
+         * @param maxPoolSize maximum count of threads. New threads above the core size are started
+         *                    only when the queue is full. Not limited by default.
+         * @return config builder.
+         */
+        public Builder withMaxPoolSize(int maxPoolSize) {
+            config.maxPoolSize = maxPoolSize;
+            return this;
+        }
+
+        /**
+         * @param keepAliveSeconds time that threads above the core size may stay idle before they
+         *                         are terminated, 60 seconds by default.
+         * @return config builder.
+         */
+        public Builder withKeepAliveSeconds(long keepAliveSeconds) {
+            config.keepAliveSeconds = keepAliveSeconds;
+            return this;
+        }
+
+        /**
+         * @param queueType type of the queue for tasks that wait for a thread,
+         *                  {@link #QUEUE_DIRECT} by default, so every task starts right away
+         *                  in a free or a new thread and priorities do not matter. With other
+         *                  queues only core threads run, unless the queue has a capacity.
+         * @return config builder.
+         */
+        public Builder withQueueType(@QueueType int queueType) {
+            config.queueType = queueType;
+            return this;
+        }
+
+        /**
+         * @param queueCapacity maximum count of tasks that wait for a thread, 0 for no limit,
+         *                      which is the default.
+         * @return config builder.
+         */
+        public Builder withQueueCapacity(int queueCapacity) {
+            config.queueCapacity = queueCapacity;
+            return this;
+        }
+
+        /**
+         * @param rejectionPolicy what to do with tasks that can not be executed, because all
+         *                        threads are busy and the queue is full,
+         *                        {@link #REJECT_ABORT} by default.
+         * @return config builder.
+         */
+        public Builder withRejectionPolicy(@RejectionPolicy int rejectionPolicy) {
+            config.rejectionPolicy = rejectionPolicy;
+            return this;
+        }
+
+        /**
+         * @param threadPriority linux priority of worker threads, from -20 for the highest to 19
+         *                       for the lowest. On a plain JVM it is mapped to Java thread
+         *                       priorities. {@link #THREAD_PRIORITY_BACKGROUND} by default.
+         * @return config builder.
+         */
+        public Builder withThreadPriority(int threadPriority) {
+            config.threadPriority = threadPriority;
+            return this;
+        }
+
+        /**
+         * @param dispatcher that runs main thread deliveries, or null to use the main Looper on
+         *                   Android and {@link EventLoopDispatcher} on a plain JVM.
+         * @return config builder.
+         */
+        public Builder withMainThreadDispatcher(@Nullable MainThreadDispatcher dispatcher) {
+            config.mainThreadDispatcher = dispatcher;
+            return this;
+        }
+
+        /**
+         * @param metricsSink to receive measurements of tasks and event delivery, for example
+         *                    {@link MetricsRecorder}. None by default.
+         * @return config builder.
+         */
+        public Builder withMetricsSink(@Nullable MetricsSink metricsSink) {
+            config.metricsSink = metricsSink;
+            return this;
+        }
+
+        /**
+         * @param tracing whether main thread deliveries are wrapped in system trace sections named
+         *                after the subscriber class. Disabled by default.
+         * @return config builder.
+         */
+        public Builder withTracing(boolean tracing) {
+            config.tracing = tracing;
+            return this;
+        }
+
+        /**
+         * @param thresholdMillis budget of a main thread {@link EventListener#onEvent(Event)} call,
+         *                        for example 8 ms, half of a frame. Slower deliveries are reported
+         *                        to {@link #withSlowDeliveryListener(SlowDeliveryListener)}.
+         *                        0 by default, which disables the watchdog.
+         * @return config builder.
+         */
+        public Builder withSlowDeliveryThreshold(long thresholdMillis) {
+            config.slowDeliveryThresholdMillis = thresholdMillis;
+            return this;
+        }
+
+        /**
+         * @param listener to receive reports of slow main thread deliveries. None by default.
+         * @return config builder.
+         */
+        public Builder withSlowDeliveryListener(@Nullable SlowDeliveryListener listener) {
+            config.slowDeliveryListener = listener;
+            return this;
+        }
+
+        /**
+         * @param maxSlowDeliveries count of slow deliveries after which events, that should be
+         *                          delivered in main thread, are delivered to the subscriber
+         *                          in a background thread instead, still one by one and in order.
+         *                          Lasts until the subscriber unsubscribes. 0 by default, which
+         *                          keeps slow subscribers on the main thread.
+         * @return config builder.
+         */
+        public Builder withSlowSubscriberDemotion(int maxSlowDeliveries) {
+            config.slowSubscriberDemotion = maxSlowDeliveries;
+            return this;
+        }
+
+        /**
+         * @param index generated by the annotation processor, required to subscribe objects with
+         *              {@link Subscribe} methods. May be called several times, for example with
+         *              the index of every module.
+         * @return config builder.
+         */
+        public Builder withSubscriberIndex(@NonNull SubscriberIndex index) {
+            config.subscriberIndexes.add(index);
+            return this;
+        }
+
+        /**
+         * Limits events that wait for subscribers, for example events posted to a screen that
+         * was closed. Posted events that are delivered right away are not counted.
+         *
+         * @param perSubscriber maximum count of events stored for one subscriber class, and of
+         *                      events stored for all subscribers, 0 for no limit.
+         * @param total         maximum count of stored events, 0 for no limit.
+         *                      No limits by default.
+         * @return config builder.
+         */
+        public Builder withStoredEventLimits(int perSubscriber, int total) {
+            config.maxStoredEventsPerSubscriber = perSubscriber;
+            config.maxStoredEvents = total;
+            return this;
+        }
+
+        /**
+         * @param ttlMillis time after which an event that waits for subscribers is dropped.
+         *                  0 by default, which keeps events until they are delivered.
+         * @return config builder.
+         */
+        public Builder withStoredEventTtl(long ttlMillis) {
+            config.storedEventTtlMillis = ttlMillis;
+            return this;
+        }
+
+        /**
+         * @param evictionPolicy which event to drop when a limit of stored events is reached,
+         *                       {@link #EVICT_OLDEST} by default.
+         * @return config builder.
+         */
+        public Builder withEvictionPolicy(@EvictionPolicy int evictionPolicy) {
+            config.evictionPolicy = evictionPolicy;
+            return this;
+        }
+
+        /**
+         * Enables durable events: events that wait for subscribers are also written to a memory
+         * mapped journal, so they are not lost if the process is killed. Events left by the
+         * previous process are restored on the first subscription, and delivered the same way as
+         * other stored events. Only events without data and object extras are journaled, events
+         * of Event subclasses are kept only in memory.
+         * <p>
+         * On Android pass a file in the app files directory, for example
+         * {@code new File(context.getFilesDir(), "workerthread.journal")}.
+         *
+         * @param file of the journal, or null to keep events only in memory, which is the default.
+         * @return config builder.
+         */
+        public Builder withJournal(@Nullable File file) {
+            config.journalFile = file;
+            return this;
+        }
+
+        /**
+         * Bounds main thread deliveries waiting for each subscriber, so a producer that posts
+         * faster than the main thread delivers gets feedback instead of growing the main thread
+         * queue without limit. Events delivered in the source thread are not queued.
+         *
+         * @param capacity count of events that may wait for one subscriber, 0 for no limit,
+         *                 which is the default.
+         * @param strategy what to do with events posted to a full queue,
+         *                 {@link #OVERFLOW_BLOCK} by default.
+         * @return config builder.
+         * @see WorkerThread#tryPost(Event, long, java.util.concurrent.TimeUnit)
+         */
+        public Builder withDeliveryQueue(int capacity, @OverflowStrategy int strategy) {
+            config.deliveryQueueCapacity = capacity;
+            config.overflowStrategy = strategy;
+            return this;
+        }
+
+        public Config build() {
+            if (config.corePoolSize < 0 || config.maxPoolSize <= 0
+                    || config.maxPoolSize < config.corePoolSize) {
+                throw new IllegalArgumentException("Invalid pool size.");
+            }
+            if (config.queueCapacity < 0) {
+                throw new IllegalArgumentException("Queue capacity cannot be negative.");
+            }
+            if (config.slowDeliveryThresholdMillis < 0 || config.slowSubscriberDemotion < 0) {
+                throw new IllegalArgumentException("Slow delivery limits cannot be negative.");
+            }
+            if (config.slowSubscriberDemotion > 0 && config.slowDeliveryThresholdMillis == 0) {
+                throw new IllegalArgumentException("Demotion requires slow delivery threshold.");
+            }
+            if (config.maxStoredEventsPerSubscriber < 0 || config.maxStoredEvents < 0
+                    || config.storedEventTtlMillis < 0) {
+                throw new IllegalArgumentException("Stored event limits cannot be negative.");
+            }
+            if (config.deliveryQueueCapacity < 0) {
+                throw new IllegalArgumentException("Delivery queue capacity cannot be negative.");
+            }
+            return config;
+        }
+    }
+
+    //endregion
+}
@@ -0,0 +1,86 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Holds the latest {@link Event#TYPE_LATEST_ONLY} event waiting for main thread delivery to one
+ * subscriber. While the slot is scheduled, newer events overwrite the pending one instead of
+ * being delivered separately, so the subscriber only receives the newest value.
+ */
+final class ConflationSlot implements Runnable, SerialExecutor.Droppable {
+
+    /**
+     * Slot was empty, it should be scheduled for delivery.
+     */
+    static final int OFFER_SCHEDULE = 0;
+
+    /**
+     * Event replaced the pending one, slot is already scheduled.
+     */
+    static final int OFFER_MERGED = 1;
+
+    /**
+     * Other events were delivered to the subscriber after the slot was scheduled. Event must be
+     * delivered separately to keep the delivery order.
+     */
+    static final int OFFER_REJECTED = 2;
+
+    private final Subscription subscription;
+
+    @Nullable
+    private Event pending;
+    private int barrier;
+
+    ConflationSlot(@NonNull Subscription subscription) {
+        this.subscription = subscription;
+    }
+
+    int offer(@NonNull Event event, int barrier) {
+        Event replaced;
+        synchronized (this) {
+            if (pending != null && this.barrier != barrier) {
+                return OFFER_REJECTED;
+            }
+
+            event.acquire();
+            replaced = pending;
+            pending = event;
+            this.barrier = barrier;
+        }
+
+        if (replaced == null) {
+            return OFFER_SCHEDULE;
+        } else {
+            replaced.release();
+            return OFFER_MERGED;
+        }
+    }
+
+    @Nullable
+    private synchronized Event take() {
+        Event event = pending;
+        pending = null;
+        return event;
+    }
+
+    @Override
+    public void run() {
+        Event event = take();
+        if (event != null) {
+            try {
+                WorkerThread.get().runDelivery(subscription, event);
+            } finally {
+                event.release();
+            }
+        }
+    }
+
+    @Override
+    public void drop() {
+        Event event = take();
+        if (event != null) {
+            event.release();
+        }
+    }
+}
@@ -0,0 +1,11 @@
+package com.ivanvasheka.workerthread;
+
+/**
+ * Step that transforms the result of a task, see {@link TaskResult#thenOnWorker(Continuation)}.
+ *
+ * @param <T> type of the previous result.
+ * @param <R> type of the new result.
+ */
+public interface Continuation<T, R> {
+    R then(T value) throws Exception;
+}
@@ -0,0 +1,98 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Delivers a single event to a single subscriber. Deliveries are pooled, so steady flow of
+ * events does not allocate new runnables.
+ */
+final class Delivery implements Runnable, SerialExecutor.Droppable {
+
+    private static final int MAX_POOL_SIZE = 50;
+
+    private static final Object poolLock = new Object();
+    private static Delivery pool;
+    private static int poolSize;
+
+    private Subscription subscription;
+    private Event event;
+    private Delivery next;
+    // Guarded by poolLock. Run and drop release the event once, whichever comes first.
+    private boolean recycled;
+
+    private Delivery() {
+    }
+
+    /**
+     * Returns a delivery from the pool. Delivery holds a reference to the event until it is run.
+     *
+     * @param subscription to receive the event.
+     * @param event        to be delivered.
+     * @return delivery, that is returned to the pool after it is run.
+     */
+    @NonNull
+    static Delivery obtain(@NonNull Subscription subscription, @NonNull Event event) {
+        Delivery delivery = null;
+        synchronized (poolLock) {
+            if (pool != null) {
+                delivery = pool;
+                pool = delivery.next;
+                delivery.next = null;
+                poolSize--;
+            }
+        }
+
+        if (delivery == null) {
+            delivery = new Delivery();
+        }
+        delivery.recycled = false;
+        delivery.subscription = subscription;
+        delivery.event = event;
+        event.acquire();
+        return delivery;
+    }
+
+    @Override
+    public void run() {
+        Subscription subscription = this.subscription;
+        Event event = this.event;
+        if (!recycle()) {
+            return;
+        }
+
+        try {
+            WorkerThread.get().runDelivery(subscription, event);
+        } finally {
+            event.release();
+        }
+    }
+
+    @Override
+    public void drop() {
+        Event event = this.event;
+        if (recycle()) {
+            event.release();
+        }
+    }
+
+    /**
+     * @return false if the delivery was already recycled, then the caller must not touch
+     * the event.
+     */
+    private boolean recycle() {
+        synchronized (poolLock) {
+            if (recycled) {
+                return false;
+            }
+            recycled = true;
+            subscription = null;
+            event = null;
+            if (poolSize < MAX_POOL_SIZE) {
+                next = pool;
+                pool = this;
+                poolSize++;
+            }
+        }
+        return true;
+    }
+}
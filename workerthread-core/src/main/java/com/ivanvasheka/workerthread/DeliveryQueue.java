@@ -0,0 +1,353 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Bounded queue of main thread deliveries to one subscriber, used instead of separate
+ * {@link Delivery}s when {@link Config.Builder#withDeliveryQueue(int, int)} is set. Events wait in
+ * the queue, and the queue itself is handed to the main thread, at most once at a time, so events
+ * handed to the main thread for one subscriber never exceed the capacity. When the queue is full,
+ * the overflow strategy decides what happens to the posted event. For subscribers with their own
+ * executor, the queue is handed to that executor instead of the main thread.
+ * <p>
+ * {@link Event#TYPE_LATEST_ONLY} events replace queued events of the same class, instead of
+ * taking more room.
+ * <p>
+ * When the subscriber is unsubscribed while deliveries are still queued, the queue is retired
+ * until they are done, and the queue of the next subscription of the same subscriber does not
+ * start before that, so the subscriber receives events in the order they were posted.
+ */
+final class DeliveryQueue implements Runnable, SerialExecutor.Droppable {
+
+    /**
+     * Queue was idle, it should be handed to the main thread.
+     */
+    static final int OFFER_SCHEDULE = 0;
+
+    /**
+     * Event is queued, the queue is already handed to the main thread.
+     */
+    static final int OFFER_QUEUED = 1;
+
+    /**
+     * Queue is full, event is not queued.
+     */
+    static final int OFFER_REJECTED = 2;
+
+    private final Subscription subscription;
+    private final int capacity;
+    @Config.OverflowStrategy
+    private final int strategy;
+
+    private final ArrayDeque<Event> events;
+    private boolean scheduled;
+    private int waiting;
+    /**
+     * Thread that is delivering events of the queue, it is never blocked by the queue.
+     */
+    @Nullable
+    private Thread consumer;
+
+    /**
+     * Retired queue of the previous subscription of the subscriber, that has to finish first.
+     * Accessed only by runs of this queue, which are one at a time, or when it is dropped.
+     */
+    @Nullable
+    private DeliveryQueue predecessor;
+    /**
+     * Queue of the next subscription, scheduled once this one is idle.
+     */
+    @Nullable
+    private DeliveryQueue successor;
+    @Nullable
+    private ConcurrentMap<Object, DeliveryQueue> retiredQueues;
+    @Nullable
+    private Object retiredKey;
+
+    DeliveryQueue(@NonNull Subscription subscription, int capacity,
+            @Config.OverflowStrategy int strategy, @Nullable DeliveryQueue predecessor) {
+        this.subscription = subscription;
+        this.capacity = capacity;
+        this.strategy = strategy;
+        this.predecessor = predecessor;
+        events = new ArrayDeque<>(Math.min(capacity, 16));
+    }
+
+    /**
+     * @param event     to be delivered.
+     * @param waitNanos time to wait for room if the queue is full, after which the event is
+     *                  rejected. 0 to not wait and apply the overflow strategy right away,
+     *                  negative to wait as long as {@link Config#OVERFLOW_BLOCK} requires.
+     * @param mayWait   whether the calling thread may be blocked.
+     * @return one of OFFER_ constants.
+     */
+    int offer(@NonNull Event event, long waitNanos, boolean mayWait) {
+        Event dropped = null;
+        try {
+            synchronized (this) {
+                if (Event.TYPE_LATEST_ONLY == event.getType()) {
+                    dropped = removeOldest(event.getClass(), true);
+                }
+
+                if (dropped == null && events.size() >= capacity) {
+                    awaitRoom(waitNanos, mayWait);
+                    if (events.size() >= capacity) {
+                        if (waitNanos > 0) {
+                            return OFFER_REJECTED;
+                        }
+                        switch (strategy) {
+                            case Config.OVERFLOW_DROP_OLDEST:
+                                dropped = events.poll();
+                                break;
+                            case Config.OVERFLOW_CONFLATE:
+                                dropped = removeOldest(event.getClass(), false);
+                                if (dropped == null) {
+                                    dropped = events.poll();
+                                }
+                                break;
+                            case Config.OVERFLOW_DROP_NEWEST:
+                                return OFFER_REJECTED;
+                            default:
+                                // The producer can not wait in this thread, the capacity is
+                                // exceeded rather than losing the event.
+                                break;
+                        }
+                    }
+                }
+
+                event.acquire();
+                events.add(event);
+                if (scheduled) {
+                    return OFFER_QUEUED;
+                }
+                scheduled = true;
+                return OFFER_SCHEDULE;
+            }
+        } finally {
+            if (dropped != null) {
+                dropped.release();
+            }
+        }
+    }
+
+    /**
+     * Waits for room like {@link #offer(Event, long, boolean)} does, without queueing the event.
+     * Used before the event waits behind stored events, as it is queued later without waiting.
+     *
+     * @return <b>false</b> if {@link #offer(Event, long, boolean)} would reject the event now.
+     */
+    synchronized boolean awaitRoom(@NonNull Event event, long waitNanos, boolean mayWait) {
+        if (events.size() < capacity || Event.TYPE_LATEST_ONLY == event.getType()
+                && containsLatest(event.getClass())) {
+            return true;
+        }
+        awaitRoom(waitNanos, mayWait);
+        return events.size() < capacity
+                || waitNanos <= 0 && Config.OVERFLOW_DROP_NEWEST != strategy;
+    }
+
+    /**
+     * Delivers queued events, at most the capacity of them, so a fast producer does not hold
+     * the main thread. The rest is delivered in the next run.
+     */
+    @Override
+    public void run() {
+        DeliveryQueue before = predecessor;
+        if (before != null) {
+            predecessor = null;
+            if (before.runAfter(this)) {
+                return;
+            }
+        }
+
+        Thread current = Thread.currentThread();
+        DeliveryQueue next = null;
+        boolean idle = false;
+        try {
+            for (int i = 0; i < capacity; i++) {
+                Event event;
+                synchronized (this) {
+                    consumer = current;
+                    event = events.poll();
+                    if (event == null) {
+                        scheduled = false;
+                        idle = true;
+                        next = onIdle();
+                        return;
+                    }
+                    if (waiting > 0) {
+                        notifyAll();
+                    }
+                }
+
+                try {
+                    WorkerThread.get().runDelivery(subscription, event);
+                } finally {
+                    event.release();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                consumer = null;
+            }
+            // Either the capacity is delivered, or the listener has thrown.
+            if (!idle) {
+                WorkerThread.get().scheduleDeliveries(subscription, this);
+            } else if (next != null) {
+                WorkerThread.get().scheduleDeliveries(next.subscription, next);
+            }
+        }
+    }
+
+    /**
+     * Releases queued events, the queue was rejected by the executor of the subscription.
+     */
+    @Override
+    public void drop() {
+        List<Event> dropped;
+        DeliveryQueue next;
+        synchronized (this) {
+            dropped = new ArrayList<>(events);
+            events.clear();
+            scheduled = false;
+            predecessor = null;
+            next = onIdle();
+            if (waiting > 0) {
+                notifyAll();
+            }
+        }
+        for (Event event : dropped) {
+            event.release();
+        }
+        if (next != null) {
+            WorkerThread.get().scheduleDeliveries(next.subscription, next);
+        }
+    }
+
+    /**
+     * Called when the subscriber is unsubscribed. If deliveries are still queued, the queue is
+     * kept in the map until they are done, so the next subscription of the subscriber can find it.
+     *
+     * @param retiredQueues queues of unsubscribed subscribers, by subscriber.
+     * @param key           the subscriber.
+     */
+    synchronized void retire(@NonNull ConcurrentMap<Object, DeliveryQueue> retiredQueues,
+            @NonNull Object key) {
+        if (scheduled) {
+            this.retiredQueues = retiredQueues;
+            retiredKey = key;
+            retiredQueues.put(key, this);
+        }
+    }
+
+    /**
+     * @return events waiting for delivery, oldest first.
+     */
+    @NonNull
+    synchronized List<Event> queued() {
+        return new ArrayList<>(events);
+    }
+
+    /**
+     * @param next queue to be scheduled once this one is idle.
+     * @return <b>false</b> if this queue is idle already, so the next one can run right away.
+     */
+    private synchronized boolean runAfter(@NonNull DeliveryQueue next) {
+        if (!scheduled) {
+            return false;
+        }
+        successor = next;
+        return true;
+    }
+
+    /**
+     * @return queue of the next subscription that waits for this one.
+     */
+    @Nullable
+    private DeliveryQueue onIdle() {
+        if (retiredQueues != null) {
+            retiredQueues.remove(retiredKey, this);
+            retiredQueues = null;
+            retiredKey = null;
+        }
+        DeliveryQueue next = successor;
+        successor = null;
+        return next;
+    }
+
+    /**
+     * Waits for room if the queue is full and the caller is allowed to wait.
+     */
+    private void awaitRoom(long waitNanos, boolean mayWait) {
+        if (!mayWait || consumer == Thread.currentThread()) {
+            return;
+        }
+        if (waitNanos > 0) {
+            awaitRoom(waitNanos);
+        } else if (waitNanos < 0 && Config.OVERFLOW_BLOCK == strategy) {
+            awaitRoom(-1);
+        }
+    }
+
+    /**
+     * @param timeoutNanos time to wait, or negative to wait until there is room.
+     */
+    private void awaitRoom(long timeoutNanos) {
+        long deadline = System.nanoTime() + timeoutNanos;
+        waiting++;
+        try {
+            while (events.size() >= capacity) {
+                if (timeoutNanos < 0) {
+                    wait();
+                } else {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return;
+                    }
+                    TimeUnit.NANOSECONDS.timedWait(this, remaining);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            waiting--;
+        }
+    }
+
+    /**
+     * @return whether a queued {@link Event#TYPE_LATEST_ONLY} event of the class can be replaced.
+     */
+    private boolean containsLatest(Class<?> eventClass) {
+        for (Event queued : events) {
+            if (queued.getClass() == eventClass && Event.TYPE_LATEST_ONLY == queued.getType()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param latestOnly whether only {@link Event#TYPE_LATEST_ONLY} events may be removed.
+     * @return removed event, or null if there are no queued events of the class.
+     */
+    @Nullable
+    private Event removeOldest(Class<?> eventClass, boolean latestOnly) {
+        for (Iterator<Event> iterator = events.iterator(); iterator.hasNext(); ) {
+            Event queued = iterator.next();
+            if (queued.getClass() == eventClass
+                    && (!latestOnly || Event.TYPE_LATEST_ONLY == queued.getType())) {
+                iterator.remove();
+                return queued;
+            }
+        }
+        return null;
+    }
+}
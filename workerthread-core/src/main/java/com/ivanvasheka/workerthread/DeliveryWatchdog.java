@@ -0,0 +1,81 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Wraps main thread deliveries with trace sections and measures them against the budget.
+ * Slow deliveries are reported, subscribers that are slow too often are demoted to a background
+ * thread.
+ */
+final class DeliveryWatchdog {
+
+    private final WorkerThread owner;
+    private final Platform platform;
+    private final boolean tracing;
+    private final long thresholdNanos;
+    @Nullable
+    private final SlowDeliveryListener listener;
+    private final int maxSlowDeliveries;
+
+    DeliveryWatchdog(@NonNull WorkerThread owner, @NonNull Platform platform,
+            @NonNull Config config) {
+        this.owner = owner;
+        this.platform = platform;
+        tracing = config.isTracing();
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(config.getSlowDeliveryThresholdMillis());
+        listener = config.getSlowDeliveryListener();
+        maxSlowDeliveries = config.getSlowSubscriberDemotion();
+    }
+
+    /**
+     * @return watchdog for the configuration, or null if it has nothing to do.
+     */
+    @Nullable
+    static DeliveryWatchdog create(@NonNull WorkerThread owner, @NonNull Config config) {
+        if (!config.isTracing() && config.getSlowDeliveryThresholdMillis() == 0) {
+            return null;
+        }
+        return new DeliveryWatchdog(owner, Platform.get(), config);
+    }
+
+    boolean isDemotionEnabled() {
+        return maxSlowDeliveries > 0;
+    }
+
+    void deliver(@NonNull Subscription subscription, @NonNull Event event) {
+        if (tracing) {
+            platform.beginTraceSection(subscription.traceSection());
+        }
+        long start = thresholdNanos > 0 ? System.nanoTime() : 0;
+        try {
+            subscription.listener.onEvent(event);
+        } finally {
+            if (tracing) {
+                platform.endTraceSection();
+            }
+        }
+
+        if (thresholdNanos > 0) {
+            long duration = System.nanoTime() - start;
+            // Deliveries of demoted subscribers do not block the main thread anymore.
+            if (duration > thresholdNanos && !subscription.isDemoted()) {
+                onSlowDelivery(subscription, event, duration);
+            }
+        }
+    }
+
+    private void onSlowDelivery(Subscription subscription, Event event, long duration) {
+        if (listener != null) {
+            listener.onSlowDelivery(subscription.listener, event, duration);
+        }
+        if (maxSlowDeliveries > 0 && subscription.onSlowDelivery() == maxSlowDeliveries) {
+            owner.demote(subscription);
+            if (listener != null) {
+                listener.onSubscriberDemoted(subscription.listener);
+            }
+        }
+    }
+}
@@ -1,14 +1,21 @@
 package com.ivanvasheka.workerthread;
 
-import android.os.Bundle;
-import android.os.Parcelable;
 import android.support.annotation.IntDef;
 import android.support.annotation.NonNull;
 import android.support.annotation.Nullable;
 
 import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
-
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+
+/**
+ * Event that is delivered to the {@link EventListener}s.
+ * <p>
+ * Events can be obtained from the pool with {@link #obtain()}, the same way as
+ * Android Messages. Such events are recycled automatically after all subscribers
+ * received them, so they must not be used after {@link EventListener#onEvent(Event)} returns,
+ * unless the subscriber called {@link #retain()}.
+ */
 @SuppressWarnings("unused")
 public class Event {
 
@@ -22,6 +29,8 @@ public class Event {
      * Events posted with this type will overwrite any previously stored events with this type for
      * the same subscriber. Useful for events, that contains, for example, progress updates.
      * If there are no suitable subscribers, event will wait for subscription of those.
+     * While main thread delivery of such event is queued, newer events of the same class replace
+     * it, so the subscriber receives only the latest one.
      */
     public static final int TYPE_LATEST_ONLY = 1;
 
@@ -36,6 +45,21 @@ public class Event {
     public @interface Type {
     }
 
+    private static final int NUMBER_NONE = 0;
+    private static final int NUMBER_INT = 1;
+    private static final int NUMBER_LONG = 2;
+    private static final int NUMBER_FLOAT = 3;
+    private static final int NUMBER_DOUBLE = 4;
+
+    private static final int MAX_POOL_SIZE = 50;
+
+    private static final Object poolLock = new Object();
+    private static Event pool;
+    private static int poolSize;
+
+    private static final AtomicIntegerFieldUpdater<Event> referencesUpdater =
+            AtomicIntegerFieldUpdater.newUpdater(Event.class, "references");
+
     @Nullable
     private Class<?> subscriber;
     @Type
@@ -45,11 +69,29 @@ public class Event {
     @Nullable
     private String message;
     @Nullable
-    private Number number;
+    private Object data;
+
+    // Number is kept as a primitive, boxed one is created only when requested.
+    private int numberKind;
+    private long longNumber;
+    private double doubleNumber;
     @Nullable
-    private Bundle extra;
+    private Number number;
+
     @Nullable
-    private Object data;
+    private Extras extras;
+
+    // Time of posting, set only when metrics are collected.
+    long postedNanos;
+
+    // Pool state. Event obtained from the pool is recycled when there are no references left.
+    private Event next;
+    // Set for events created by obtain(), only those are returned to the pool.
+    private boolean pooled;
+    private boolean recyclable;
+    private boolean retained;
+    private boolean recycled;
+    private volatile int references;
 
     public Event() {
     }
@@ -86,17 +128,79 @@ public class Event {
 
     //region Number methods
 
+    /**
+     * Returns the number of the event. Number that was set as a primitive is boxed
+     * on the first call, use primitive getters to avoid that.
+     *
+     * @return number, or <b>null</b> if it was not set.
+     */
     @Nullable
     public Number getNumber() {
+        if (number == null) {
+            switch (numberKind) {
+                case NUMBER_INT:
+                    number = (int) longNumber;
+                    break;
+                case NUMBER_LONG:
+                    number = longNumber;
+                    break;
+                case NUMBER_FLOAT:
+                    number = (float) doubleNumber;
+                    break;
+                case NUMBER_DOUBLE:
+                    number = doubleNumber;
+                    break;
+            }
+        }
         return number;
     }
 
     public void setNumber(@Nullable Number number) {
         this.number = number;
+        if (number == null) {
+            numberKind = NUMBER_NONE;
+            longNumber = 0;
+            doubleNumber = 0;
+        } else {
+            if (number instanceof Double) {
+                numberKind = NUMBER_DOUBLE;
+            } else if (number instanceof Float) {
+                numberKind = NUMBER_FLOAT;
+            } else if (number instanceof Long) {
+                numberKind = NUMBER_LONG;
+            } else {
+                numberKind = NUMBER_INT;
+            }
+            longNumber = number.longValue();
+            doubleNumber = number.doubleValue();
+        }
+    }
+
+    public void setNumber(int number) {
+        setPrimitiveNumber(NUMBER_INT, number, number);
+    }
+
+    public void setNumber(long number) {
+        setPrimitiveNumber(NUMBER_LONG, number, number);
+    }
+
+    public void setNumber(float number) {
+        setPrimitiveNumber(NUMBER_FLOAT, (long) number, number);
+    }
+
+    public void setNumber(double number) {
+        setPrimitiveNumber(NUMBER_DOUBLE, (long) number, number);
+    }
+
+    private void setPrimitiveNumber(int kind, long longValue, double doubleValue) {
+        numberKind = kind;
+        longNumber = longValue;
+        doubleNumber = doubleValue;
+        number = null;
     }
 
     public boolean hasNumber() {
-        return number != null;
+        return numberKind != NUMBER_NONE;
     }
 
     /**
@@ -115,13 +219,59 @@ public class Event {
      * @return <b>int</b> value of events number, or <b>defValue</b>.
      */
     public int getInt(int defValue) {
-        if (number == null) {
+        if (numberKind == NUMBER_NONE) {
+            return defValue;
+        } else if (numberKind == NUMBER_FLOAT || numberKind == NUMBER_DOUBLE) {
+            return (int) doubleNumber;
+        } else {
+            return (int) longNumber;
+        }
+    }
+
+    /**
+     * Returns long value of the event number, without boxing.
+     *
+     * @return <b>long</b> value of events number, or <b>0</b>.
+     */
+    public long getLong() {
+        return getLong(0);
+    }
+
+    /**
+     * Returns long value of the event number, without boxing.
+     *
+     * @param defValue to return if number is missing.
+     * @return <b>long</b> value of events number, or <b>defValue</b>.
+     */
+    public long getLong(long defValue) {
+        if (numberKind == NUMBER_NONE) {
             return defValue;
+        } else if (numberKind == NUMBER_FLOAT || numberKind == NUMBER_DOUBLE) {
+            return (long) doubleNumber;
         } else {
-            return number.intValue();
+            return longNumber;
         }
     }
 
+    /**
+     * Returns double value of the event number, without boxing.
+     *
+     * @return <b>double</b> value of events number, or <b>0</b>.
+     */
+    public double getDouble() {
+        return getDouble(0);
+    }
+
+    /**
+     * Returns double value of the event number, without boxing.
+     *
+     * @param defValue to return if number is missing.
+     * @return <b>double</b> value of events number, or <b>defValue</b>.
+     */
+    public double getDouble(double defValue) {
+        return numberKind == NUMBER_NONE ? defValue : doubleNumber;
+    }
+
     //endregion
 
     //region Message methods
@@ -144,16 +294,7 @@ public class Event {
 
     //endregion
 
-    //region Bundle methods
-
-    @Nullable
-    public Bundle getExtra() {
-        return extra;
-    }
-
-    public void setExtra(@Nullable Bundle extra) {
-        this.extra = extra;
-    }
+    //region Extra methods
 
     /**
      * Returns true if the given key is contained in the mapping.
@@ -162,7 +303,7 @@ public class Event {
      * @return true if the key is part of the mapping, false otherwise
      */
     public boolean hasExtra(String key) {
-        return extra != null && extra.containsKey(key);
+        return extras != null && extras.containsKey(key);
     }
 
     /**
@@ -174,7 +315,7 @@ public class Event {
      * @return a boolean value
      */
     public boolean getBooleanExtra(String key, boolean defaultValue) {
-        return extra == null ? defaultValue : extra.getBoolean(key, defaultValue);
+        return extras == null ? defaultValue : extras.getPrimitive(key, Extras.KIND_BOOLEAN, defaultValue ? 1 : 0) != 0;
     }
 
     /**
@@ -186,7 +327,7 @@ public class Event {
      * @return a byte value
      */
     public byte getByteExtra(String key, byte defaultValue) {
-        return extra == null ? defaultValue : extra.getByte(key, defaultValue);
+        return extras == null ? defaultValue : (byte) extras.getPrimitive(key, Extras.KIND_BYTE, defaultValue);
     }
 
     /**
@@ -198,7 +339,7 @@ public class Event {
      * @return a char value
      */
     public char getCharExtra(String key, char defaultValue) {
-        return extra == null ? defaultValue : extra.getChar(key, defaultValue);
+        return extras == null ? defaultValue : (char) extras.getPrimitive(key, Extras.KIND_CHAR, defaultValue);
     }
 
     /**
@@ -210,7 +351,7 @@ public class Event {
      * @return a short value
      */
     public short getShortExtra(String key, short defaultValue) {
-        return extra == null ? defaultValue : extra.getShort(key, defaultValue);
+        return extras == null ? defaultValue : (short) extras.getPrimitive(key, Extras.KIND_SHORT, defaultValue);
     }
 
     /**
@@ -222,7 +363,7 @@ public class Event {
      * @return a integer value
      */
     public int getIntExtra(String key, int defaultValue) {
-        return extra == null ? defaultValue : extra.getInt(key, defaultValue);
+        return extras == null ? defaultValue : (int) extras.getPrimitive(key, Extras.KIND_INT, defaultValue);
     }
 
     /**
@@ -234,7 +375,7 @@ public class Event {
      * @return a long value
      */
     public long getLongExtra(String key, long defaultValue) {
-        return extra == null ? defaultValue : extra.getLong(key, defaultValue);
+        return extras == null ? defaultValue : extras.getPrimitive(key, Extras.KIND_LONG, defaultValue);
     }
 
     /**
@@ -246,7 +387,8 @@ public class Event {
      * @return a float value
      */
     public float getFloatExtra(String key, float defaultValue) {
-        return extra == null ? defaultValue : extra.getFloat(key, defaultValue);
+        return extras == null ? defaultValue : Float.intBitsToFloat((int) extras.getPrimitive(key, Extras.KIND_FLOAT,
+                Float.floatToRawIntBits(defaultValue)));
     }
 
     /**
@@ -258,7 +400,8 @@ public class Event {
      * @return a double value
      */
     public double getDoubleExtra(String key, double defaultValue) {
-        return extra == null ? defaultValue : extra.getDouble(key, defaultValue);
+        return extras == null ? defaultValue : Double.longBitsToDouble(extras.getPrimitive(key, Extras.KIND_DOUBLE,
+                Double.doubleToRawLongBits(defaultValue)));
     }
 
     /**
@@ -269,7 +412,7 @@ public class Event {
      * @return a String value or null
      */
     public String getStringExtra(String key) {
-        return extra == null ? null : extra.getString(key);
+        return extras == null ? null : (String) extras.getReference(key, Extras.KIND_STRING);
     }
 
     /**
@@ -280,18 +423,25 @@ public class Event {
      * @return a CharSequence value or null
      */
     public CharSequence getCharSequenceExtra(String key) {
-        return extra == null ? null : extra.getCharSequence(key);
+        if (extras == null) {
+            return null;
+        } else if (extras.kindOf(key) == Extras.KIND_STRING) {
+            return (String) extras.getReference(key, Extras.KIND_STRING);
+        }
+        return (CharSequence) extras.getReference(key, Extras.KIND_CHAR_SEQUENCE);
     }
 
     /**
-     * Returns the value associated with the given key, or defaultValue if no mapping of the
-     * desired type exists for the given key.
+     * Returns the value associated with the given key, or null if no object was added
+     * for the given key.
      *
      * @param key a String or null
-     * @return a Parcelable value or null
+     * @return an object or null
      */
-    public <E extends Parcelable> E getParcelableExtra(String key) {
-        return extra == null ? null : extra.<E>getParcelable(key);
+    @Nullable
+    public <E> E getObjectExtra(String key) {
+        //noinspection unchecked
+        return extras == null ? null : (E) extras.getReference(key, Extras.KIND_OBJECT);
     }
 
     /**
@@ -302,8 +452,7 @@ public class Event {
      * @param value a boolean
      */
     public void putExtra(String key, boolean value) {
-        if (extra == null) extra = new Bundle();
-        extra.putBoolean(key, value);
+        extras().putPrimitive(key, Extras.KIND_BOOLEAN, value ? 1 : 0);
     }
 
     /**
@@ -314,8 +463,7 @@ public class Event {
      * @param value a byte
      */
     public void putExtra(String key, byte value) {
-        if (extra == null) extra = new Bundle();
-        extra.putByte(key, value);
+        extras().putPrimitive(key, Extras.KIND_BYTE, value);
     }
 
     /**
@@ -326,8 +474,7 @@ public class Event {
      * @param value a char
      */
     public void putExtra(String key, char value) {
-        if (extra == null) extra = new Bundle();
-        extra.putChar(key, value);
+        extras().putPrimitive(key, Extras.KIND_CHAR, value);
     }
 
     /**
@@ -338,8 +485,7 @@ public class Event {
      * @param value a short
      */
     public void putExtra(String key, short value) {
-        if (extra == null) extra = new Bundle();
-        extra.putShort(key, value);
+        extras().putPrimitive(key, Extras.KIND_SHORT, value);
     }
 
     /**
@@ -350,8 +496,7 @@ public class Event {
      * @param value an int
      */
     public void putExtra(String key, int value) {
-        if (extra == null) extra = new Bundle();
-        extra.putInt(key, value);
+        extras().putPrimitive(key, Extras.KIND_INT, value);
     }
 
     /**
@@ -362,8 +507,7 @@ public class Event {
      * @param value a long
      */
     public void putExtra(String key, long value) {
-        if (extra == null) extra = new Bundle();
-        extra.putLong(key, value);
+        extras().putPrimitive(key, Extras.KIND_LONG, value);
     }
 
     /**
@@ -374,8 +518,7 @@ public class Event {
      * @param value a float
      */
     public void putExtra(String key, float value) {
-        if (extra == null) extra = new Bundle();
-        extra.putFloat(key, value);
+        extras().putPrimitive(key, Extras.KIND_FLOAT, Float.floatToRawIntBits(value));
     }
 
     /**
@@ -386,8 +529,7 @@ public class Event {
      * @param value a double
      */
     public void putExtra(String key, double value) {
-        if (extra == null) extra = new Bundle();
-        extra.putDouble(key, value);
+        extras().putPrimitive(key, Extras.KIND_DOUBLE, Double.doubleToRawLongBits(value));
     }
 
     /**
@@ -398,8 +540,7 @@ public class Event {
      * @param value a String or null
      */
     public void putExtra(String key, String value) {
-        if (extra == null) extra = new Bundle();
-        extra.putString(key, value);
+        extras().putReference(key, Extras.KIND_STRING, value);
     }
 
     /**
@@ -410,20 +551,18 @@ public class Event {
      * @param value a CharSequence or null
      */
     public void putExtra(String key, CharSequence value) {
-        if (extra == null) extra = new Bundle();
-        extra.putCharSequence(key, value);
+        extras().putReference(key, Extras.KIND_CHAR_SEQUENCE, value);
     }
 
     /**
-     * Adds a Parcelable value to the extra, replacing any existing value for the given key.
-     * Added Parcelable can be obtained by calling getParcelableExtra method with given key.
+     * Adds an object to the extra, replacing any existing value for the given key.
+     * Added object can be obtained by calling getObjectExtra method with given key.
      *
      * @param key   a String or null
-     * @param value a Parcelable or null
+     * @param value an object or null
      */
-    public void putExtra(String key, Parcelable value) {
-        if (extra == null) extra = new Bundle();
-        extra.putParcelable(key, value);
+    public void putObjectExtra(String key, @Nullable Object value) {
+        extras().putReference(key, Extras.KIND_OBJECT, value);
     }
 
     /**
@@ -432,8 +571,24 @@ public class Event {
      * @param key a String or null
      */
     public void removeExtra(String key) {
-        if (extra == null) extra = new Bundle();
-        extra.remove(key);
+        if (extras != null) {
+            extras.remove(key);
+        }
+    }
+
+    /**
+     * @return compact extras, or null if nothing was added.
+     */
+    @Nullable
+    Extras getExtras() {
+        return extras;
+    }
+
+    private Extras extras() {
+        if (extras == null) {
+            extras = new Extras();
+        }
+        return extras;
     }
 
     //endregion
@@ -456,10 +611,128 @@ public class Event {
         return useMainThread;
     }
 
-    public void post() {
-        WorkerThread.get().post(this);
+    /**
+     * @see WorkerThread#post(Event)
+     */
+    public boolean post() {
+        return WorkerThread.get().post(this);
+    }
+
+    //region Pool methods
+
+    /**
+     * Returns a new event from the pool, allowing to avoid allocations. Event will be recycled
+     * automatically after delivery.
+     *
+     * @return event to be delivered to all subscribers.
+     */
+    public static Event obtain() {
+        Event event = null;
+        synchronized (poolLock) {
+            if (pool != null) {
+                event = pool;
+                pool = event.next;
+                event.next = null;
+                poolSize--;
+            }
+        }
+
+        if (event == null) {
+            event = new Event();
+            event.pooled = true;
+        }
+        event.recycled = false;
+        event.recyclable = true;
+        return event;
+    }
+
+    /**
+     * Same as {@link #obtain()}, but sets the subscriber of the returned event.
+     *
+     * @param subscriber that should receive the event.
+     * @return event to be delivered to the subscriber.
+     */
+    public static Event obtain(@NonNull Class<?> subscriber) {
+        Event event = obtain();
+        event.subscriber = subscriber;
+        return event;
     }
 
+    /**
+     * Prevents automatic recycling of the event obtained from the pool. Should be called
+     * in {@link EventListener#onEvent(Event)} if the event is used after the method returns.
+     * Retained event can be returned to the pool by {@link #recycle()}.
+     */
+    public void retain() {
+        retained = true;
+    }
+
+    /**
+     * Returns the event to the pool. The event must not be used after this call. Events that were
+     * not obtained from the pool are cleared, but not added to it.
+     *
+     * @throws IllegalStateException if the event is still waiting for delivery or already recycled.
+     */
+    public void recycle() {
+        if (recycled) {
+            throw new IllegalStateException("Event is already recycled.");
+        }
+        if (references > 0) {
+            throw new IllegalStateException("Event cannot be recycled while it is being delivered.");
+        }
+
+        recycleUnchecked();
+    }
+
+    /**
+     * Adds reference to the event that waits for delivery.
+     */
+    void acquire() {
+        if (recyclable) {
+            referencesUpdater.incrementAndGet(this);
+        }
+    }
+
+    /**
+     * Removes the reference added by {@link #acquire()}. Recycles the event when there are no
+     * references left, unless the event is retained.
+     */
+    void release() {
+        if (recyclable && referencesUpdater.decrementAndGet(this) == 0 && !retained) {
+            recycleUnchecked();
+        }
+    }
+
+    private void recycleUnchecked() {
+        subscriber = null;
+        type = TYPE_NONE;
+        useMainThread = true;
+        message = null;
+        data = null;
+        setNumber(null);
+        if (extras != null) {
+            extras.clear();
+        }
+        postedNanos = 0;
+        recyclable = false;
+        retained = false;
+        recycled = true;
+
+        if (!pooled) {
+            return;
+        }
+
+        synchronized (poolLock) {
+            if (poolSize < MAX_POOL_SIZE) {
+                next = pool;
+                pool = this;
+                poolSize++;
+            }
+        }
+    }
+
+    //endregion
+
     //region Builder pattern realisation
 
     public static Builder toEveryone() {
@@ -470,6 +743,23 @@ public class Event {
         return new Builder(subscriber);
     }
 
+    /**
+     * Same as {@link #toEveryone()}, but builds an event obtained from the pool, see
+     * {@link #obtain()}. Subscribers that keep the event after delivery must {@link #retain()} it.
+     */
+    public static Builder obtainToEveryone() {
+        return new Builder(obtain());
+    }
+
+    /**
+     * Same as {@link #to(Class)}, but builds an event obtained from the pool, see
+     * {@link #obtain(Class)}. Subscribers that keep the event after delivery must
+     * {@link #retain()} it.
+     */
+    public static Builder obtainTo(@NonNull Class<?> subscriber) {
+        return new Builder(obtain(subscriber));
+    }
+
     public static class Builder {
 
         private Event event;
@@ -482,6 +772,10 @@ public class Event {
             event = new Event(subscriber);
         }
 
+        private Builder(@NonNull Event event) {
+            this.event = event;
+        }
+
         public Builder withType(@Type int type) {
             event.type = type;
             return this;
@@ -498,17 +792,32 @@ public class Event {
         }
 
         public Builder withNumber(@Nullable Number number) {
-            event.number = number;
+            event.setNumber(number);
             return this;
         }
 
-        public Builder withMessage(@Nullable String message) {
-            event.message = message;
+        public Builder withNumber(int number) {
+            event.setNumber(number);
+            return this;
+        }
+
+        public Builder withNumber(long number) {
+            event.setNumber(number);
             return this;
         }
 
-        public Builder withExtra(@Nullable Bundle extra) {
-            event.extra = extra;
+        public Builder withNumber(float number) {
+            event.setNumber(number);
+            return this;
+        }
+
+        public Builder withNumber(double number) {
+            event.setNumber(number);
+            return this;
+        }
+
+        public Builder withMessage(@Nullable String message) {
+            event.message = message;
             return this;
         }
 
@@ -532,8 +841,8 @@ public class Event {
             return event;
         }
 
-        public void post() {
-            event.post();
+        public boolean post() {
+            return event.post();
         }
     }
 
@@ -551,9 +860,10 @@ public class Event {
             return false;
         if (message != null ? !message.equals(event.message) : event.message != null)
             return false;
-        if (number != null ? !number.equals(event.number) : event.number != null) return false;
-        //noinspection SimplifiableIfStatement
-        if (extra != null ? !extra.equals(event.extra) : event.extra != null) return false;
+        if (numberKind != event.numberKind) return false;
+        if (longNumber != event.longNumber) return false;
+        if (Double.compare(doubleNumber, event.doubleNumber) != 0) return false;
+        if (extras != null ? !extras.equals(event.extras) : event.extras != null) return false;
         return !(data != null ? !data.equals(event.data) : event.data != null);
 
     }
@@ -563,8 +873,11 @@ public class Event {
         int result = subscriber != null ? subscriber.hashCode() : 0;
         result = 31 * result + type;
         result = 31 * result + (message != null ? message.hashCode() : 0);
-        result = 31 * result + (number != null ? number.hashCode() : 0);
-        result = 31 * result + (extra != null ? extra.hashCode() : 0);
+        result = 31 * result + numberKind;
+        result = 31 * result + (int) (longNumber ^ (longNumber >>> 32));
+        long doubleBits = Double.doubleToLongBits(doubleNumber);
+        result = 31 * result + (int) (doubleBits ^ (doubleBits >>> 32));
+        result = 31 * result + (extras != null ? extras.hashCode() : 0);
         result = 31 * result + (data != null ? data.hashCode() : 0);
         return result;
     }
@@ -574,9 +887,9 @@ public class Event {
         return "Event{" +
                 "subscriber='" + subscriber + '\'' +
                 ", type=" + type +
-                ", number=" + number +
+                ", number=" + getNumber() +
                 ", message='" + message + '\'' +
-                ", extra=" + extra +
+                ", extra=" + extras +
                 ", data=" + data +
                 '}';
     }
@@ -0,0 +1,381 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Forwards events between processes, for example between the UI process and a separate
+ * <b>:sync</b> process, each of which has its own {@link WorkerThread}. Events posted in this
+ * process and accepted by the filter are sent to the peer, events received from the peer are
+ * posted in this process, as if they were posted here, but are not forwarded back.
+ * <pre>
+ * EventBridge bridge = EventBridge.builder(LocalSocketConnection.connect("com.example.events"))
+ *         .withFilter(filter)
+ *         .build();
+ * bridge.start();
+ * </pre>
+ * The connection can be any pair of streams: on Android the workerthread module provides
+ * LocalSocketConnection over Unix domain sockets, on a plain JVM a TCP socket on the loopback
+ * interface can be used.
+ * <p>
+ * Events are encoded in a compact binary form, only events without data and object extras can be
+ * forwarded. They are written in batches: a frame is the length of the rest of the frame, count of
+ * events, and the events, each prefixed with its length. A frame is written when the batch
+ * reaches {@link Builder#withMaxBatchBytes(int)}, or {@link Builder#withFlushDelay(long)} after
+ * the first event of the batch was posted. Posting threads only encode the event and add it to the
+ * batch, writing and reading is done by two threads of the bridge.
+ */
+public final class EventBridge {
+
+    /**
+     * Batches are not allowed to grow above this size while the peer does not read, newer events
+     * are dropped instead.
+     */
+    static final int MAX_FRAME_SIZE = 1024 * 1024;
+
+    /**
+     * Streams of a connection to the peer process.
+     */
+    public interface Connection extends Closeable {
+
+        @NonNull
+        InputStream getInputStream() throws IOException;
+
+        @NonNull
+        OutputStream getOutputStream() throws IOException;
+    }
+
+    /**
+     * Selects events to be forwarded to the peer. Called in the posting thread before the event
+     * is delivered, so it must be fast.
+     */
+    public interface Filter {
+
+        boolean shouldForward(@NonNull Event event);
+    }
+
+    private final Connection connection;
+    @Nullable
+    private final Filter filter;
+    private final int maxBatchBytes;
+    private final long flushDelayNanos;
+
+    private final Object lock = new Object();
+    private final ByteArrayOutputStream batch = new ByteArrayOutputStream();
+    private int batchCount;
+    private long batchStartNanos;
+    private boolean started;
+    private volatile boolean closed;
+    @Nullable
+    private WorkerThread workerThread;
+
+    private EventBridge(Builder builder) {
+        connection = builder.connection;
+        filter = builder.filter;
+        maxBatchBytes = builder.maxBatchBytes;
+        flushDelayNanos = TimeUnit.MILLISECONDS.toNanos(builder.flushDelayMillis);
+    }
+
+    /**
+     * Starts forwarding events of {@link WorkerThread#get()} to the peer and posting events
+     * received from the peer.
+     *
+     * @throws IllegalStateException if the bridge was already started.
+     */
+    public void start() {
+        synchronized (lock) {
+            if (started) {
+                throw new IllegalStateException("Bridge is already started.");
+            }
+            started = true;
+        }
+
+        workerThread = WorkerThread.get();
+        workerThread.addBridge(this);
+        startThread("WorkerThread Bridge Writer", new Runnable() {
+            @Override
+            public void run() {
+                write();
+            }
+        });
+        startThread("WorkerThread Bridge Reader", new Runnable() {
+            @Override
+            public void run() {
+                read();
+            }
+        });
+    }
+
+    /**
+     * Stops the bridge and closes the connection. Events that are not written yet are dropped.
+     * The bridge is also closed when the peer closes the connection, or it fails.
+     */
+    public void close() {
+        synchronized (lock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            batch.reset();
+            batchCount = 0;
+            lock.notifyAll();
+        }
+
+        if (workerThread != null) {
+            workerThread.removeBridge(this);
+        }
+        try {
+            connection.close();
+        } catch (IOException ignored) {
+            // Nothing to do, the bridge is stopped anyway.
+        }
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
+    //region Forwarding
+
+    /**
+     * Adds the event to the batch if the filter accepts it, called for every event posted in this
+     * process.
+     */
+    void forward(@NonNull Event event) {
+        if (closed || filter != null && !filter.shouldForward(event)) {
+            return;
+        }
+        byte[] encoded = encode(event);
+        if (encoded == null) {
+            return;
+        }
+
+        synchronized (lock) {
+            if (closed || batch.size() + encoded.length > MAX_FRAME_SIZE) {
+                return;
+            }
+            if (batchCount == 0) {
+                batchStartNanos = System.nanoTime();
+            }
+            batch.write(encoded, 0, encoded.length);
+            batchCount++;
+            if (batchCount == 1 || batch.size() >= maxBatchBytes) {
+                lock.notifyAll();
+            }
+        }
+    }
+
+    private void write() {
+        try {
+            OutputStream out = new BufferedOutputStream(connection.getOutputStream());
+            while (true) {
+                byte[] entries;
+                int count;
+                synchronized (lock) {
+                    while (!closed && batchCount == 0) {
+                        lock.wait();
+                    }
+                    long remaining;
+                    while (!closed && batch.size() < maxBatchBytes && (remaining =
+                            batchStartNanos + flushDelayNanos - System.nanoTime()) > 0) {
+                        TimeUnit.NANOSECONDS.timedWait(lock, remaining);
+                    }
+                    if (closed) {
+                        return;
+                    }
+                    entries = batch.toByteArray();
+                    count = batchCount;
+                    batch.reset();
+                    batchCount = 0;
+                }
+                writeFrame(out, entries, count);
+            }
+        } catch (IOException | InterruptedException e) {
+            close();
+        }
+    }
+
+    private void read() {
+        try {
+            DataInputStream in = new DataInputStream(
+                    new BufferedInputStream(connection.getInputStream()));
+            while (!closed) {
+                for (Event event : readFrame(in)) {
+                    //noinspection ConstantConditions
+                    workerThread.postFromBridge(event);
+                }
+            }
+        } catch (IOException e) {
+            close();
+        }
+    }
+
+    private static void startThread(String name, Runnable runnable) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    //endregion
+
+    //region Framing
+
+    /**
+     * @return the event prefixed with its length, or null if the event can not be encoded.
+     */
+    @Nullable
+    static byte[] encode(@NonNull Event event) {
+        if (!EventCodec.canEncode(event)) {
+            return null;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        try {
+            out.writeInt(0);
+            EventCodec.encode(event, out);
+        } catch (IOException e) {
+            // Strings too long for the encoding.
+            return null;
+        }
+
+        byte[] encoded = bytes.toByteArray();
+        int length = encoded.length - 4;
+        encoded[0] = (byte) (length >>> 24);
+        encoded[1] = (byte) (length >>> 16);
+        encoded[2] = (byte) (length >>> 8);
+        encoded[3] = (byte) length;
+        return encoded;
+    }
+
+    /**
+     * Writes and flushes a frame.
+     *
+     * @param entries events returned by {@link #encode(Event)}, one after another.
+     * @param count   of the events.
+     */
+    static void writeFrame(@NonNull OutputStream out, @NonNull byte[] entries, int count)
+            throws IOException {
+        DataOutputStream data = new DataOutputStream(out);
+        data.writeInt(entries.length + 4);
+        data.writeInt(count);
+        data.write(entries);
+        data.flush();
+    }
+
+    /**
+     * Reads a frame. Events that can not be decoded, for example because their subscriber class
+     * does not exist in this process, are skipped.
+     *
+     * @return new events, that are not pooled, so subscribers may keep them after delivery.
+     * @throws IOException if the stream fails or ends, or the frame is malformed.
+     */
+    @NonNull
+    static List<Event> readFrame(@NonNull DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 4 || length > MAX_FRAME_SIZE + 4) {
+            throw new IOException("Malformed frame of " + length + " bytes.");
+        }
+        byte[] frame = new byte[length];
+        in.readFully(frame);
+
+        DataInputStream entries = new DataInputStream(new ByteArrayInputStream(frame));
+        int count = entries.readInt();
+        List<Event> events = new ArrayList<>(count);
+        int offset = 4;
+        for (int i = 0; i < count; i++) {
+            int size = entries.readInt();
+            offset += 4;
+            if (size < 0 || size > length - offset) {
+                throw new IOException("Malformed frame entry of " + size + " bytes.");
+            }
+            try {
+                events.add(EventCodec.decode(new DataInputStream(
+                        new ByteArrayInputStream(frame, offset, size))));
+            } catch (IOException ignored) {
+                // Skipped, the rest of the frame is still valid.
+            }
+            offset += size;
+            if (entries.skipBytes(size) != size) {
+                throw new IOException("Malformed frame.");
+            }
+        }
+        return events;
+    }
+
+    //endregion
+
+    //region Builder pattern realisation
+
+    public static Builder builder(@NonNull Connection connection) {
+        return new Builder(connection);
+    }
+
+    public static class Builder {
+
+        private final Connection connection;
+        @Nullable
+        private Filter filter;
+        private int maxBatchBytes = 8 * 1024;
+        private long flushDelayMillis = 2;
+
+        public Builder(@NonNull Connection connection) {
+            this.connection = connection;
+        }
+
+        /**
+         * @param filter selecting events to forward, or null to forward all events that can be
+         *               encoded, which is the default.
+         * @return bridge builder.
+         */
+        public Builder withFilter(@Nullable Filter filter) {
+            this.filter = filter;
+            return this;
+        }
+
+        /**
+         * @param maxBatchBytes size of a batch that is written right away, 8 KB by default.
+         * @return bridge builder.
+         */
+        public Builder withMaxBatchBytes(int maxBatchBytes) {
+            this.maxBatchBytes = maxBatchBytes;
+            return this;
+        }
+
+        /**
+         * @param delayMillis time a batch waits for more events before it is written,
+         *                    2 ms by default. 0 writes every event right away.
+         * @return bridge builder.
+         */
+        public Builder withFlushDelay(long delayMillis) {
+            this.flushDelayMillis = delayMillis;
+            return this;
+        }
+
+        public EventBridge build() {
+            if (maxBatchBytes <= 0 || maxBatchBytes > MAX_FRAME_SIZE) {
+                throw new IllegalArgumentException("Invalid batch size.");
+            }
+            if (flushDelayMillis < 0) {
+                throw new IllegalArgumentException("Flush delay cannot be negative.");
+            }
+            return new EventBridge(this);
+        }
+    }
+
+    //endregion
+}
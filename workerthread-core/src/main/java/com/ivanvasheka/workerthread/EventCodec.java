@@ -0,0 +1,193 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Compact binary encoding of events, used to keep them outside of the process: in the
+ * {@link EventJournal} and in frames of the {@link EventBridge}.
+ * <p>
+ * Only plain {@link Event}s without data and object extras can be encoded, the subscriber class
+ * is written by name and loaded back with the class loader of the library.
+ */
+final class EventCodec {
+
+    private static final byte NUMBER_NONE = 0;
+    private static final byte NUMBER_INT = 1;
+    private static final byte NUMBER_LONG = 2;
+    private static final byte NUMBER_FLOAT = 3;
+    private static final byte NUMBER_DOUBLE = 4;
+
+    private EventCodec() {
+    }
+
+    static boolean canEncode(@NonNull Event event) {
+        if (event.getClass() != Event.class || event.getData() != null) {
+            return false;
+        }
+        Extras extras = event.getExtras();
+        if (extras != null) {
+            for (int i = 0; i < extras.capacity(); i++) {
+                if (extras.kindAt(i) == Extras.KIND_OBJECT) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @param event that {@link #canEncode(Event)}.
+     * @throws IOException if the output fails, or strings are too long for the encoding.
+     */
+    static void encode(@NonNull Event event, @NonNull DataOutput out) throws IOException {
+        Class<?> subscriber = event.getSubscriber();
+        out.writeByte(event.getType());
+        out.writeBoolean(event.useMainThread());
+        writeString(out, subscriber == null ? null : subscriber.getName());
+        writeString(out, event.getMessage());
+
+        Number number = event.getNumber();
+        if (number == null) {
+            out.writeByte(NUMBER_NONE);
+        } else if (number instanceof Double) {
+            out.writeByte(NUMBER_DOUBLE);
+            out.writeDouble(number.doubleValue());
+        } else if (number instanceof Float) {
+            out.writeByte(NUMBER_FLOAT);
+            out.writeFloat(number.floatValue());
+        } else if (number instanceof Long) {
+            out.writeByte(NUMBER_LONG);
+            out.writeLong(number.longValue());
+        } else {
+            out.writeByte(NUMBER_INT);
+            out.writeInt(number.intValue());
+        }
+
+        Extras extras = event.getExtras();
+        out.writeShort(extras == null ? 0 : extras.size());
+        if (extras != null) {
+            for (int i = 0; i < extras.capacity(); i++) {
+                byte kind = extras.kindAt(i);
+                if (kind == Extras.KIND_NONE) {
+                    continue;
+                }
+                writeString(out, extras.keyAt(i));
+                out.writeByte(kind);
+                if (kind == Extras.KIND_STRING || kind == Extras.KIND_CHAR_SEQUENCE) {
+                    Object value = extras.referenceAt(i);
+                    writeString(out, value == null ? null : value.toString());
+                } else {
+                    out.writeLong(extras.primitiveAt(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * @return new event, that is not pooled, so subscribers may keep it after delivery.
+     * @throws IOException if the input fails or is malformed, or the subscriber class can not be
+     *                     loaded.
+     */
+    @NonNull
+    static Event decode(@NonNull DataInput in) throws IOException {
+        int type = in.readByte();
+        boolean useMainThread = in.readBoolean();
+        String subscriber = readString(in);
+        Event.Builder builder;
+        if (subscriber == null) {
+            builder = new Event.Builder();
+        } else {
+            try {
+                builder = new Event.Builder(
+                        Class.forName(subscriber, false, EventCodec.class.getClassLoader()));
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Unknown subscriber " + subscriber);
+            }
+        }
+        //noinspection WrongConstant
+        builder.withType(type).withMessage(readString(in));
+        if (!useMainThread) {
+            builder.useSourceThread();
+        }
+
+        switch (in.readByte()) {
+            case NUMBER_INT:
+                builder.withNumber(in.readInt());
+                break;
+            case NUMBER_LONG:
+                builder.withNumber(in.readLong());
+                break;
+            case NUMBER_FLOAT:
+                builder.withNumber(in.readFloat());
+                break;
+            case NUMBER_DOUBLE:
+                builder.withNumber(in.readDouble());
+                break;
+        }
+
+        Event event = builder.build();
+        for (int count = in.readShort(); count > 0; count--) {
+            readExtra(in, event);
+        }
+        return event;
+    }
+
+    private static void readExtra(DataInput in, Event event) throws IOException {
+        String key = readString(in);
+        byte kind = in.readByte();
+        if (kind == Extras.KIND_STRING) {
+            event.putExtra(key, readString(in));
+            return;
+        } else if (kind == Extras.KIND_CHAR_SEQUENCE) {
+            event.putExtra(key, (CharSequence) readString(in));
+            return;
+        }
+
+        long value = in.readLong();
+        switch (kind) {
+            case Extras.KIND_BOOLEAN:
+                event.putExtra(key, value != 0);
+                break;
+            case Extras.KIND_BYTE:
+                event.putExtra(key, (byte) value);
+                break;
+            case Extras.KIND_CHAR:
+                event.putExtra(key, (char) value);
+                break;
+            case Extras.KIND_SHORT:
+                event.putExtra(key, (short) value);
+                break;
+            case Extras.KIND_INT:
+                event.putExtra(key, (int) value);
+                break;
+            case Extras.KIND_LONG:
+                event.putExtra(key, value);
+                break;
+            case Extras.KIND_FLOAT:
+                event.putExtra(key, Float.intBitsToFloat((int) value));
+                break;
+            case Extras.KIND_DOUBLE:
+                event.putExtra(key, Double.longBitsToDouble(value));
+                break;
+            default:
+                throw new IOException("Unknown extra kind " + kind);
+        }
+    }
+
+    private static void writeString(DataOutput out, @Nullable String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    @Nullable
+    private static String readString(DataInput in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+}
@@ -0,0 +1,354 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Append only journal of stored events, kept in a memory mapped file, so stored events survive
+ * the death of the process. Writes go to the page cache without fsync, the kernel writes them
+ * to the disk in the background.
+ * <p>
+ * The file starts with a magic number, followed by records: length of the rest of the record,
+ * operation, event id and, for added events, the encoded event. Length is written last, so a
+ * record torn by the death of the process reads as the end of the journal. Removal appends a
+ * record as well, removed events are dropped from the file by compaction, which rewrites live
+ * records into a new file and renames it over the journal.
+ * <p>
+ * Events that {@link EventCodec} can not encode are kept only in memory. If the file can not be
+ * written, the journal stops and events are kept only in memory too.
+ * <p>
+ * Not thread safe, access must be guarded by the owner.
+ */
+final class EventJournal {
+
+    private static final int MAGIC = 0x57544a31;
+    private static final int HEADER_SIZE = 4;
+    private static final int INITIAL_CAPACITY = 64 * 1024;
+    private static final int MIN_COMPACTION_BYTES = 16 * 1024;
+
+    private static final byte OP_ADD = 1;
+    private static final byte OP_REMOVE = 2;
+    // Length, operation and id.
+    private static final int RECORD_HEADER_SIZE = 4 + 1 + 8;
+
+    private final File file;
+
+    private MappedByteBuffer buffer;
+    private boolean opened;
+    private boolean failed;
+
+    /**
+     * Live records by event id, in the order they are in the file.
+     */
+    private final LinkedHashMap<Long, Record> records = new LinkedHashMap<>();
+    /**
+     * Ids of events journaled by the previous process, until they are replayed.
+     */
+    @Nullable
+    private List<Long> restored;
+    private long nextId = 1;
+    private int position;
+    private int liveBytes;
+    private int deadBytes;
+
+    private final ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+    private final DataOutputStream out = new DataOutputStream(bytes);
+
+    EventJournal(@NonNull File file) {
+        this.file = file;
+    }
+
+    /**
+     * Appends the event if it can be journaled.
+     *
+     * @return id of the record, or 0 if the event is not journaled.
+     */
+    long append(@NonNull Event event) {
+        if (failed || !EventCodec.canEncode(event)) {
+            return 0;
+        }
+        try {
+            bytes.reset();
+            EventCodec.encode(event, out);
+        } catch (IOException e) {
+            // Strings too long for the encoding, the event is kept only in memory.
+            return 0;
+        }
+
+        try {
+            open();
+            long id = nextId++;
+            int size = RECORD_HEADER_SIZE + bytes.size();
+            ensureRoom(size);
+            int offset = position;
+            write(OP_ADD, id);
+            buffer.position(offset + RECORD_HEADER_SIZE);
+            buffer.put(bytes.toByteArray());
+            publish(offset, size);
+
+            records.put(id, new Record(offset, size));
+            liveBytes += size;
+            return id;
+        } catch (IOException e) {
+            fail();
+            return 0;
+        }
+    }
+
+    /**
+     * Marks the event as delivered or dropped. Compacts the journal when removed records take
+     * more space than live ones.
+     *
+     * @param id returned by {@link #append(Event)}, or passed to {@link #replay()} callers.
+     */
+    void remove(long id) {
+        if (failed || id == 0) {
+            return;
+        }
+        Record record = records.remove(id);
+        if (record == null) {
+            return;
+        }
+
+        liveBytes -= record.size;
+        try {
+            if (records.isEmpty()) {
+                // Nothing is live, start over in place.
+                buffer.putInt(HEADER_SIZE, 0);
+                position = HEADER_SIZE;
+                deadBytes = 0;
+                return;
+            }
+
+            ensureRoom(RECORD_HEADER_SIZE);
+            int offset = position;
+            write(OP_REMOVE, id);
+            publish(offset, RECORD_HEADER_SIZE);
+            deadBytes += record.size + RECORD_HEADER_SIZE;
+            if (deadBytes >= MIN_COMPACTION_BYTES && deadBytes > liveBytes) {
+                compact(0);
+            }
+        } catch (IOException e) {
+            fail();
+        }
+    }
+
+    /**
+     * Decodes events journaled by the previous process. Returns them only once, events that can
+     * not be decoded anymore, for example because their subscriber class was removed, are
+     * dropped.
+     *
+     * @return events with one reference for the store by their ids, in the order they were
+     * stored.
+     */
+    @NonNull
+    Map<Long, Event> replay() {
+        LinkedHashMap<Long, Event> events = new LinkedHashMap<>();
+        if (failed) {
+            return events;
+        }
+        try {
+            open();
+        } catch (IOException e) {
+            fail();
+            return events;
+        }
+
+        List<Long> ids = restored;
+        restored = null;
+        if (ids == null) {
+            return events;
+        }
+        for (Long id : ids) {
+            Record record = records.get(id);
+            if (record == null) {
+                continue;
+            }
+
+            byte[] encoded = new byte[record.size - RECORD_HEADER_SIZE];
+            buffer.position(record.offset + RECORD_HEADER_SIZE);
+            buffer.get(encoded);
+            try {
+                Event event = EventCodec.decode(
+                        new DataInputStream(new ByteArrayInputStream(encoded)));
+                event.acquire();
+                events.put(id, event);
+            } catch (IOException e) {
+                remove(id);
+            }
+        }
+        return events;
+    }
+
+    //region File
+
+    /**
+     * Maps the file and indexes records left by the previous process.
+     */
+    private void open() throws IOException {
+        if (opened) {
+            return;
+        }
+        opened = true;
+
+        long length = file.length();
+        map(file, (int) Math.max(INITIAL_CAPACITY, Math.min(length, Integer.MAX_VALUE)));
+        if (length < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(HEADER_SIZE, 0);
+            position = HEADER_SIZE;
+            return;
+        }
+
+        int offset = HEADER_SIZE;
+        int capacity = buffer.capacity();
+        while (offset + RECORD_HEADER_SIZE <= capacity) {
+            int size = buffer.getInt(offset) + 4;
+            if (size < RECORD_HEADER_SIZE || size > capacity - offset) {
+                break;
+            }
+
+            byte operation = buffer.get(offset + 4);
+            long id = buffer.getLong(offset + 5);
+            if (operation == OP_ADD) {
+                records.put(id, new Record(offset, size));
+                liveBytes += size;
+            } else {
+                Record removed = records.remove(id);
+                if (removed != null) {
+                    liveBytes -= removed.size;
+                    deadBytes += removed.size;
+                }
+                deadBytes += size;
+            }
+            nextId = Math.max(nextId, id + 1);
+            offset += size;
+        }
+        position = offset;
+        if (!records.isEmpty()) {
+            restored = new ArrayList<>(records.keySet());
+        }
+    }
+
+    private void ensureRoom(int size) throws IOException {
+        // Keep room for the terminating zero length.
+        int required = size + 4;
+        if (position + required <= buffer.capacity()) {
+            return;
+        }
+        if (deadBytes > 0) {
+            compact(required);
+            if (position + required <= buffer.capacity()) {
+                return;
+            }
+        }
+
+        int capacity = buffer.capacity();
+        while (position + required > capacity) {
+            if (capacity > Integer.MAX_VALUE / 2) {
+                throw new IOException("Journal is too large.");
+            }
+            capacity *= 2;
+        }
+        map(file, capacity);
+    }
+
+    /**
+     * Writes live records into a new file and replaces the journal with it.
+     *
+     * @param extra bytes that should fit after the live records.
+     */
+    private void compact(int extra) throws IOException {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < HEADER_SIZE + liveBytes + extra + 4) {
+            capacity *= 2;
+        }
+
+        File temp = new File(file.getPath() + ".tmp");
+        if (temp.exists() && !temp.delete()) {
+            throw new IOException("Can not delete " + temp);
+        }
+        MappedByteBuffer source = buffer;
+        map(temp, capacity);
+
+        buffer.putInt(0, MAGIC);
+        int offset = HEADER_SIZE;
+        for (Record record : records.values()) {
+            ByteBuffer slice = source.duplicate();
+            slice.limit(record.offset + record.size).position(record.offset);
+            buffer.position(offset);
+            buffer.put(slice);
+            record.offset = offset;
+            offset += record.size;
+        }
+        buffer.putInt(offset, 0);
+        position = offset;
+        deadBytes = 0;
+
+        if (!temp.renameTo(file)) {
+            throw new IOException("Can not replace " + file);
+        }
+    }
+
+    private void map(File target, int capacity) throws IOException {
+        RandomAccessFile access = new RandomAccessFile(target, "rw");
+        try {
+            // The mapping stays valid after the file is closed.
+            buffer = access.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+        } finally {
+            access.close();
+        }
+    }
+
+    /**
+     * Writes the header of a record at the current position, except its length.
+     */
+    private void write(byte operation, long id) {
+        buffer.put(position + 4, operation);
+        buffer.putLong(position + 5, id);
+    }
+
+    /**
+     * Terminates the journal after the record and makes the record visible by writing its length.
+     */
+    private void publish(int offset, int size) {
+        buffer.putInt(offset + size, 0);
+        buffer.putInt(offset, size - 4);
+        position = offset + size;
+    }
+
+    private void fail() {
+        failed = true;
+        buffer = null;
+        records.clear();
+        restored = null;
+    }
+
+    //endregion
+
+    private static final class Record {
+
+        int offset;
+        final int size;
+
+        Record(int offset, int size) {
+            this.offset = offset;
+            this.size = size;
+        }
+    }
+}
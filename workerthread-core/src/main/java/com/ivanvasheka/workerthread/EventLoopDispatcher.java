@@ -0,0 +1,64 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Dispatcher that runs runnables on its own single thread, the "main" thread of applications that
+ * have no UI loop. Thread is started with the first runnable and is a daemon thread.
+ */
+public final class EventLoopDispatcher implements MainThreadDispatcher {
+
+    private final LinkedBlockingQueue<Runnable> queue = new LinkedBlockingQueue<>();
+    private final String name;
+
+    private volatile Thread thread;
+
+    public EventLoopDispatcher(@NonNull String name) {
+        this.name = name;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        queue.add(runnable);
+        if (thread == null) {
+            start();
+        }
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Thread.currentThread() == thread;
+    }
+
+    private synchronized void start() {
+        if (thread != null) {
+            return;
+        }
+
+        thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                while (true) {
+                    Runnable runnable;
+                    try {
+                        runnable = queue.take();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+
+                    // Failure of a single listener must not stop the loop.
+                    try {
+                        runnable.run();
+                    } catch (RuntimeException e) {
+                        Thread current = Thread.currentThread();
+                        current.getUncaughtExceptionHandler().uncaughtException(current, e);
+                    }
+                }
+            }
+        }, name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+}
@@ -0,0 +1,539 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Storage for undelivered events.
+ * <p>
+ * Events are indexed by the subscriber class they were posted to, events without subscriber are
+ * kept in a separate broadcast queue. Every queue is an intrusive linked list that remembers its
+ * {@link Event#TYPE_LATEST_ONLY} event, so replacing it or dropping the whole queue does not
+ * require a scan. Each stored event gets a sequence number, which is used to keep the posting
+ * order when queues are drained together.
+ * <p>
+ * Store owns the references of stored events: events that are replaced, invalidated, evicted or
+ * expired are released, drained events are handed over to the caller together with their
+ * references.
+ * <p>
+ * Capacity can be limited per subscriber and in total, see
+ * {@link Config.Builder#withStoredEventLimits(int, int)}. All entries are also linked in the
+ * order they were stored, so the oldest entry is found without a scan, both to evict it and to
+ * expire entries older than the time to live.
+ * <p>
+ * With a {@link EventJournal}, stored events are also journaled and removed from the journal
+ * when they leave the store, see {@link Config.Builder#withJournal(java.io.File)}.
+ * <p>
+ * Not thread safe, access must be guarded by the owner.
+ */
+final class EventStore {
+
+    private static final Comparator<Entry> BY_SEQUENCE = new Comparator<Entry>() {
+        @Override
+        public int compare(Entry first, Entry second) {
+            // Long.compare() needs API 19.
+            if (first.sequence == second.sequence) {
+                return 0;
+            }
+            return first.sequence < second.sequence ? -1 : 1;
+        }
+    };
+
+    private final int maxPerSubscriber;
+    private final int maxTotal;
+    private final long ttlNanos;
+    @Config.EvictionPolicy
+    private final int evictionPolicy;
+    @Nullable
+    private final EventJournal journal;
+
+    private final Queue broadcast = new Queue(null);
+    private final HashMap<Class<?>, Queue> targeted = new HashMap<>();
+
+    /**
+     * The oldest and the newest stored entries, across all queues.
+     */
+    private Entry oldest;
+    private Entry newest;
+
+    private long sequence;
+    /**
+     * Sequence of the oldest restored entry, restored entries are numbered down from it.
+     */
+    private long restoredSequence;
+    private int size;
+    private long evicted;
+    private long expired;
+
+    /**
+     * Creates a store without limits.
+     */
+    EventStore() {
+        this(0, 0, 0, Config.EVICT_OLDEST, null);
+    }
+
+    /**
+     * @param maxPerSubscriber maximum count of events stored for one subscriber class, or for
+     *                         all subscribers, 0 for no limit.
+     * @param maxTotal         maximum count of stored events, 0 for no limit.
+     * @param ttlNanos         time after which stored events expire, 0 to keep them forever.
+     * @param evictionPolicy   which event to remove when a limit is reached.
+     * @param journal          to keep stored events in, or null to keep them only in memory.
+     */
+    EventStore(int maxPerSubscriber, int maxTotal, long ttlNanos,
+            @Config.EvictionPolicy int evictionPolicy, @Nullable EventJournal journal) {
+        this.maxPerSubscriber = maxPerSubscriber;
+        this.maxTotal = maxTotal;
+        this.ttlNanos = ttlNanos;
+        this.evictionPolicy = evictionPolicy;
+        this.journal = journal;
+    }
+
+    /**
+     * Stores the event. If the event is {@link Event#TYPE_LATEST_ONLY}, previously stored latest
+     * only event for the same subscriber is removed. Otherwise, if a limit is reached, an event
+     * is evicted according to the eviction policy, which may be the passed event itself.
+     *
+     * @param event to be stored.
+     */
+    void add(@NonNull Event event) {
+        store(event, 0);
+    }
+
+    /**
+     * Stores events journaled by the previous process before all stored events, as they were
+     * posted earlier. A restored event that exceeds a limit is evicted, and a restored latest
+     * only event is dropped if a latest only event for the same subscriber is stored already.
+     *
+     * @return count of stored events.
+     */
+    int restore() {
+        if (journal == null) {
+            return 0;
+        }
+
+        int before = size;
+        List<Map.Entry<Long, Event>> restored = new ArrayList<>(journal.replay().entrySet());
+        // Prepended newest first, so they keep the journal order.
+        for (int i = restored.size() - 1; i >= 0; i--) {
+            prepend(restored.get(i).getValue(), restored.get(i).getKey());
+        }
+        return size - before;
+    }
+
+    /**
+     * Stores the restored event as the oldest one.
+     */
+    private void prepend(Event event, long journalId) {
+        Class<?> subscriber = event.getSubscriber();
+        Queue queue = subscriber == null ? broadcast : targeted.get(subscriber);
+        boolean full = maxPerSubscriber > 0 && queue != null && queue.size >= maxPerSubscriber
+                || maxTotal > 0 && size >= maxTotal;
+        if (full || Event.TYPE_LATEST_ONLY == event.getType()
+                && queue != null && queue.latest != null) {
+            evicted += full ? 1 : 0;
+            forget(journalId);
+            event.release();
+            return;
+        }
+
+        if (queue == null) {
+            queue = new Queue(subscriber);
+            targeted.put(subscriber, queue);
+        }
+        long now = ttlNanos > 0 ? System.nanoTime() : 0;
+        // Expires no later than the entries stored after it.
+        Entry entry = new Entry(queue, event, --restoredSequence,
+                oldest != null && now - oldest.storedNanos > 0 ? oldest.storedNanos : now,
+                journalId);
+        if (Event.TYPE_LATEST_ONLY == event.getType()) {
+            queue.latest = entry;
+        }
+        queue.prepend(entry);
+        if (oldest == null) {
+            newest = entry;
+        } else {
+            oldest.older = entry;
+            entry.newer = oldest;
+        }
+        oldest = entry;
+        size++;
+    }
+
+    /**
+     * @param journalId id of the event in the journal, or 0 to journal the event now.
+     */
+    private void store(Event event, long journalId) {
+        Class<?> subscriber = event.getSubscriber();
+        Queue queue = subscriber == null ? broadcast : targeted.get(subscriber);
+        if (Event.TYPE_LATEST_ONLY == event.getType() && queue != null && queue.latest != null) {
+            remove(queue.latest);
+        } else if (!makeRoom(queue, event)) {
+            evicted++;
+            forget(journalId);
+            event.release();
+            return;
+        }
+        if (journalId == 0 && journal != null) {
+            journalId = journal.append(event);
+        }
+
+        if (subscriber != null) {
+            // Lookup again, the queue is dropped from the index when the last entry is removed.
+            queue = targeted.get(subscriber);
+            if (queue == null) {
+                queue = new Queue(subscriber);
+                targeted.put(subscriber, queue);
+            }
+        }
+
+        Entry entry = new Entry(queue, event, sequence++, ttlNanos > 0 ? System.nanoTime() : 0,
+                journalId);
+        if (Event.TYPE_LATEST_ONLY == event.getType()) {
+            queue.latest = entry;
+        }
+        queue.append(entry);
+        if (newest == null) {
+            oldest = entry;
+        } else {
+            newest.newer = entry;
+            entry.older = newest;
+        }
+        newest = entry;
+        size++;
+    }
+
+    /**
+     * Removes events that are stored longer than the time to live.
+     *
+     * @return count of removed events.
+     */
+    int expire() {
+        if (ttlNanos == 0 || oldest == null) {
+            return 0;
+        }
+
+        long now = System.nanoTime();
+        int count = 0;
+        while (oldest != null && now - oldest.storedNanos >= ttlNanos) {
+            remove(oldest);
+            count++;
+        }
+        expired += count;
+        return count;
+    }
+
+    /**
+     * @return count of events evicted because of capacity limits since the store was created.
+     */
+    long evictedCount() {
+        return evicted;
+    }
+
+    /**
+     * @return count of events expired since the store was created.
+     */
+    long expiredCount() {
+        return expired;
+    }
+
+    /**
+     * Removes all events stored for the subscriber.
+     *
+     * @param subscriber class, or null to remove events stored for all subscribers.
+     */
+    void invalidate(@Nullable Class<?> subscriber) {
+        Queue queue = subscriber == null ? broadcast : targeted.remove(subscriber);
+        if (queue != null && queue.size > 0) {
+            size -= queue.size;
+            Entry entry = queue.head;
+            queue.clear();
+            for (; entry != null; entry = entry.next) {
+                unlinkStored(entry);
+                forget(entry.journalId);
+                entry.event.release();
+            }
+        }
+    }
+
+    boolean hasEvent(@NonNull Class<?> subscriber) {
+        Queue queue = targeted.get(subscriber);
+        return queue != null && queue.size > 0;
+    }
+
+    boolean hasEventWithNumber(@NonNull Class<?> subscriber, @NonNull Number number) {
+        Queue queue = targeted.get(subscriber);
+        if (queue != null) {
+            for (Entry entry = queue.head; entry != null; entry = entry.next) {
+                if (entry.event.hasNumber()) {
+                    //noinspection ConstantConditions
+                    return entry.event.getNumber().equals(number);
+                }
+            }
+        }
+        return false;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Removes broadcast events and events stored for the passed subscriber classes.
+     * Removed events are returned in the order they were posted. Only the classes that have
+     * stored events or the subscribed classes are looked at, whichever there are fewer of.
+     *
+     * @param subscribers classes of currently subscribed listeners.
+     * @return removed events, never null.
+     */
+    @NonNull
+    List<Event> drain(@NonNull Set<Class<?>> subscribers) {
+        List<Queue> queues = new ArrayList<>();
+        int count = 0;
+        if (broadcast.size > 0) {
+            queues.add(broadcast);
+            count += broadcast.size;
+        }
+        if (targeted.size() <= subscribers.size()) {
+            for (Iterator<Queue> iterator = targeted.values().iterator(); iterator.hasNext(); ) {
+                Queue queue = iterator.next();
+                if (subscribers.contains(queue.subscriber)) {
+                    iterator.remove();
+                    queues.add(queue);
+                    count += queue.size;
+                }
+            }
+        } else {
+            for (Class<?> subscriber : subscribers) {
+                Queue queue = targeted.remove(subscriber);
+                if (queue != null) {
+                    queues.add(queue);
+                    count += queue.size;
+                }
+            }
+        }
+
+        List<Event> drained = new ArrayList<>(count);
+        if (queues.size() == 1) {
+            for (Entry entry = queues.get(0).head; entry != null; entry = entry.next) {
+                take(entry, drained);
+            }
+        } else if (!queues.isEmpty()) {
+            // Merge queues by sequence number to keep the posting order.
+            PriorityQueue<Entry> heads = new PriorityQueue<>(queues.size(), BY_SEQUENCE);
+            for (Queue queue : queues) {
+                heads.add(queue.head);
+            }
+            Entry entry;
+            while ((entry = heads.poll()) != null) {
+                take(entry, drained);
+                if (entry.next != null) {
+                    heads.add(entry.next);
+                }
+            }
+        }
+
+        broadcast.clear();
+        size -= count;
+        return drained;
+    }
+
+    /**
+     * Hands the event of the drained entry over to the caller.
+     */
+    private void take(Entry entry, List<Event> drained) {
+        unlinkStored(entry);
+        forget(entry.journalId);
+        drained.add(entry.event);
+    }
+
+    /**
+     * Evicts an event if adding the passed one would exceed a limit.
+     *
+     * @param queue of the event, or null if there are no events for its subscriber yet.
+     * @return <b>false</b> if the passed event should be dropped instead.
+     */
+    private boolean makeRoom(@Nullable Queue queue, Event event) {
+        if (maxPerSubscriber > 0 && queue != null && queue.size >= maxPerSubscriber) {
+            if (Config.EVICT_NEWEST == evictionPolicy) {
+                return false;
+            }
+            Entry sameType = sameTypeOf(queue, event);
+            evict(sameType != null ? sameType : queue.head);
+        }
+
+        if (maxTotal > 0 && size >= maxTotal) {
+            if (Config.EVICT_NEWEST == evictionPolicy) {
+                return false;
+            }
+            Entry sameType = queue != null ? sameTypeOf(queue, event) : null;
+            evict(sameType != null ? sameType : oldest);
+        }
+        return true;
+    }
+
+    /**
+     * @return the oldest entry of the queue with event of the same class, if the policy keeps
+     * the latest event per type, null otherwise.
+     */
+    @Nullable
+    private Entry sameTypeOf(Queue queue, Event event) {
+        if (Config.EVICT_LATEST_PER_TYPE != evictionPolicy) {
+            return null;
+        }
+        for (Entry entry = queue.head; entry != null; entry = entry.next) {
+            if (entry.event.getClass() == event.getClass()) {
+                return entry;
+            }
+        }
+        return null;
+    }
+
+    private void evict(Entry entry) {
+        remove(entry);
+        evicted++;
+    }
+
+    /**
+     * Removes and releases the entry, drops its queue from the index if it becomes empty.
+     */
+    private void remove(Entry entry) {
+        Queue queue = entry.queue;
+        queue.unlink(entry);
+        unlinkStored(entry);
+        size--;
+        if (queue.size == 0 && queue.subscriber != null) {
+            targeted.remove(queue.subscriber);
+        }
+        forget(entry.journalId);
+        entry.event.release();
+    }
+
+    private void forget(long journalId) {
+        if (journalId != 0 && journal != null) {
+            journal.remove(journalId);
+        }
+    }
+
+    private void unlinkStored(Entry entry) {
+        if (entry.older == null) {
+            oldest = entry.newer;
+        } else {
+            entry.older.newer = entry.newer;
+        }
+        if (entry.newer == null) {
+            newest = entry.older;
+        } else {
+            entry.newer.older = entry.older;
+        }
+        entry.older = null;
+        entry.newer = null;
+    }
+
+    private static final class Queue {
+
+        /**
+         * Class the events are posted to, null for broadcast events.
+         */
+        @Nullable
+        final Class<?> subscriber;
+
+        Entry head;
+        Entry tail;
+        Entry latest;
+        int size;
+
+        Queue(@Nullable Class<?> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        void append(Entry entry) {
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+                entry.previous = tail;
+            }
+            tail = entry;
+            size++;
+        }
+
+        void prepend(Entry entry) {
+            if (head == null) {
+                tail = entry;
+            } else {
+                head.previous = entry;
+                entry.next = head;
+            }
+            head = entry;
+            size++;
+        }
+
+        void unlink(Entry entry) {
+            if (entry.previous == null) {
+                head = entry.next;
+            } else {
+                entry.previous.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.previous;
+            } else {
+                entry.next.previous = entry.previous;
+            }
+            entry.previous = null;
+            entry.next = null;
+            if (latest == entry) {
+                latest = null;
+            }
+            size--;
+        }
+
+        void clear() {
+            head = null;
+            tail = null;
+            latest = null;
+            size = 0;
+        }
+    }
+
+    private static final class Entry {
+
+        final Queue queue;
+        final Event event;
+        final long sequence;
+        final long storedNanos;
+        /**
+         * Id in the journal, 0 if the event is not journaled.
+         */
+        final long journalId;
+
+        Entry previous;
+        Entry next;
+        /**
+         * Neighbours in the order of storing, across all queues.
+         */
+        Entry older;
+        Entry newer;
+
+        Entry(Queue queue, Event event, long sequence, long storedNanos, long journalId) {
+            this.queue = queue;
+            this.event = event;
+            this.sequence = sequence;
+            this.storedNanos = storedNanos;
+            this.journalId = journalId;
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves event classes to all their supertypes: superclasses and implemented interfaces.
+ * Hierarchy of a class never changes, so it is resolved once and cached.
+ */
+final class EventTypes {
+
+    private static final ConcurrentHashMap<Class<?>, Class<?>[]> cache =
+            new ConcurrentHashMap<>();
+
+    private EventTypes() {
+    }
+
+    /**
+     * @param eventClass class of an event.
+     * @return the class itself followed by its supertypes.
+     */
+    @NonNull
+    static Class<?>[] supertypesOf(@NonNull Class<?> eventClass) {
+        Class<?>[] supertypes = cache.get(eventClass);
+        if (supertypes == null) {
+            Set<Class<?>> resolved = new LinkedHashSet<>();
+            for (Class<?> type = eventClass; type != null; type = type.getSuperclass()) {
+                resolved.add(type);
+                addInterfaces(resolved, type);
+            }
+            supertypes = resolved.toArray(new Class<?>[resolved.size()]);
+            Class<?>[] existing = cache.putIfAbsent(eventClass, supertypes);
+            if (existing != null) {
+                supertypes = existing;
+            }
+        }
+        return supertypes;
+    }
+
+    private static void addInterfaces(Set<Class<?>> resolved, Class<?> type) {
+        for (Class<?> implemented : type.getInterfaces()) {
+            if (resolved.add(implemented)) {
+                addInterfaces(resolved, implemented);
+            }
+        }
+    }
+}
@@ -0,0 +1,285 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Compact map of event extras. Keys are kept in an open addressing table with linear probing,
+ * values are kept in parallel arrays: primitives in a <b>long</b> array, so they are never boxed,
+ * and objects in a separate array. Each value remembers its kind, getters return the default
+ * value if the stored kind does not match, the same way as Android Bundle does.
+ * <p>
+ * Not thread safe.
+ */
+final class Extras {
+
+    static final byte KIND_NONE = 0;
+    static final byte KIND_BOOLEAN = 1;
+    static final byte KIND_BYTE = 2;
+    static final byte KIND_CHAR = 3;
+    static final byte KIND_SHORT = 4;
+    static final byte KIND_INT = 5;
+    static final byte KIND_LONG = 6;
+    static final byte KIND_FLOAT = 7;
+    static final byte KIND_DOUBLE = 8;
+    static final byte KIND_STRING = 9;
+    static final byte KIND_CHAR_SEQUENCE = 10;
+    static final byte KIND_OBJECT = 11;
+
+    private static final int DEFAULT_CAPACITY = 8;
+
+    private String[] keys;
+    private byte[] kinds;
+    private long[] primitives;
+    private Object[] references;
+    private int size;
+
+    Extras() {
+        allocate(DEFAULT_CAPACITY);
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean containsKey(@Nullable String key) {
+        return indexOf(key) >= 0;
+    }
+
+    /**
+     * @return kind of the value stored for the key, or {@link #KIND_NONE}.
+     */
+    byte kindOf(@Nullable String key) {
+        int index = indexOf(key);
+        return index < 0 ? KIND_NONE : kinds[index];
+    }
+
+    /**
+     * Returns primitive value stored with the given kind.
+     *
+     * @param key          a String or null.
+     * @param kind         expected kind of the value.
+     * @param defaultValue value to return if there is no value of the kind for the key.
+     * @return raw value bits.
+     */
+    long getPrimitive(@Nullable String key, byte kind, long defaultValue) {
+        int index = indexOf(key);
+        return index >= 0 && kinds[index] == kind ? primitives[index] : defaultValue;
+    }
+
+    /**
+     * Returns object value stored with the given kind.
+     *
+     * @param key  a String or null.
+     * @param kind expected kind of the value.
+     * @return value, or null if there is no value of the kind for the key.
+     */
+    @Nullable
+    Object getReference(@Nullable String key, byte kind) {
+        int index = indexOf(key);
+        return index >= 0 && kinds[index] == kind ? references[index] : null;
+    }
+
+    void putPrimitive(@Nullable String key, byte kind, long value) {
+        int index = insert(key);
+        kinds[index] = kind;
+        primitives[index] = value;
+        references[index] = null;
+    }
+
+    void putReference(@Nullable String key, byte kind, @Nullable Object value) {
+        int index = insert(key);
+        kinds[index] = kind;
+        primitives[index] = 0;
+        references[index] = value;
+    }
+
+    void remove(@Nullable String key) {
+        int index = indexOf(key);
+        if (index < 0) {
+            return;
+        }
+
+        // Backward shift deletion keeps probe sequences intact without tombstones.
+        int mask = keys.length - 1;
+        int hole = index;
+        int next = (hole + 1) & mask;
+        while (kinds[next] != KIND_NONE) {
+            int home = hash(keys[next]) & mask;
+            if (((next - home) & mask) >= ((next - hole) & mask)) {
+                move(next, hole);
+                hole = next;
+            }
+            next = (next + 1) & mask;
+        }
+        clearSlot(hole);
+        size--;
+    }
+
+    void clear() {
+        if (size == 0) {
+            return;
+        }
+        for (int i = 0; i < keys.length; i++) {
+            clearSlot(i);
+        }
+        size = 0;
+    }
+
+    //region Iteration over slots
+
+    /**
+     * @return count of slots, use with {@link #kindAt(int)} to iterate over stored values.
+     */
+    int capacity() {
+        return keys.length;
+    }
+
+    /**
+     * @return kind of the value in the slot, or {@link #KIND_NONE} if the slot is empty.
+     */
+    byte kindAt(int index) {
+        return kinds[index];
+    }
+
+    @Nullable
+    String keyAt(int index) {
+        return keys[index];
+    }
+
+    long primitiveAt(int index) {
+        return primitives[index];
+    }
+
+    @Nullable
+    Object referenceAt(int index) {
+        return references[index];
+    }
+
+    //endregion
+
+    private int indexOf(@Nullable String key) {
+        int mask = keys.length - 1;
+        for (int index = hash(key) & mask; kinds[index] != KIND_NONE; index = (index + 1) & mask) {
+            String stored = keys[index];
+            if (stored == key || (key != null && key.equals(stored))) {
+                return index;
+            }
+        }
+        return -1;
+    }
+
+    private int insert(@Nullable String key) {
+        int index = indexOf(key);
+        if (index >= 0) {
+            return index;
+        }
+
+        // Keep load factor below 3/4.
+        if ((size + 1) * 4 > keys.length * 3) {
+            grow();
+        }
+
+        int mask = keys.length - 1;
+        index = hash(key) & mask;
+        while (kinds[index] != KIND_NONE) {
+            index = (index + 1) & mask;
+        }
+        keys[index] = key;
+        size++;
+        return index;
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        byte[] oldKinds = kinds;
+        long[] oldPrimitives = primitives;
+        Object[] oldReferences = references;
+
+        allocate(oldKeys.length * 2);
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKinds[i] != KIND_NONE) {
+                int index = hash(oldKeys[i]) & mask;
+                while (kinds[index] != KIND_NONE) {
+                    index = (index + 1) & mask;
+                }
+                keys[index] = oldKeys[i];
+                kinds[index] = oldKinds[i];
+                primitives[index] = oldPrimitives[i];
+                references[index] = oldReferences[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        keys = new String[capacity];
+        kinds = new byte[capacity];
+        primitives = new long[capacity];
+        references = new Object[capacity];
+    }
+
+    private void move(int from, int to) {
+        keys[to] = keys[from];
+        kinds[to] = kinds[from];
+        primitives[to] = primitives[from];
+        references[to] = references[from];
+    }
+
+    private void clearSlot(int index) {
+        keys[index] = null;
+        kinds[index] = KIND_NONE;
+        primitives[index] = 0;
+        references[index] = null;
+    }
+
+    private static int hash(@Nullable String key) {
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("{");
+        for (int i = 0; i < keys.length; i++) {
+            if (kinds[i] == KIND_NONE) {
+                continue;
+            }
+            if (builder.length() > 1) {
+                builder.append(", ");
+            }
+            builder.append(keys[i]).append('=');
+            switch (kinds[i]) {
+                case KIND_BOOLEAN:
+                    builder.append(primitives[i] != 0);
+                    break;
+                case KIND_CHAR:
+                    builder.append((char) primitives[i]);
+                    break;
+                case KIND_FLOAT:
+                    builder.append(Float.intBitsToFloat((int) primitives[i]));
+                    break;
+                case KIND_DOUBLE:
+                    builder.append(Double.longBitsToDouble(primitives[i]));
+                    break;
+                case KIND_STRING:
+                case KIND_CHAR_SEQUENCE:
+                case KIND_OBJECT:
+                    builder.append(references[i]);
+                    break;
+                default:
+                    builder.append(primitives[i]);
+                    break;
+            }
+        }
+        return builder.append('}').toString();
+    }
+}
@@ -0,0 +1,128 @@
+package com.ivanvasheka.workerthread;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Concurrent histogram of non negative values with fixed relative precision, in the style of
+ * HdrHistogram. Values below 32 are counted exactly, larger values fall into one of 16 buckets
+ * per power of two, so percentiles are within about 6% of the recorded values. Recording does
+ * not allocate and does not lock.
+ */
+public final class Histogram {
+
+    private static final int EXACT_VALUES = 32;
+    private static final int SUB_BUCKET_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    // Magnitudes from 2^5 to 2^62.
+    private static final int BUCKET_COUNT = EXACT_VALUES + 58 * SUB_BUCKETS;
+
+    private final AtomicLongArray counts;
+    private final StripedCounter count;
+    private final StripedCounter sum;
+    private final AtomicLong max;
+
+    public Histogram() {
+        counts = new AtomicLongArray(BUCKET_COUNT);
+        count = new StripedCounter();
+        sum = new StripedCounter();
+        max = new AtomicLong();
+    }
+
+    /**
+     * @param value to record, negative values are recorded as 0.
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        }
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+
+        long current;
+        while (value > (current = max.get())) {
+            if (max.compareAndSet(current, value)) {
+                break;
+            }
+        }
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public double getMean() {
+        long count = getCount();
+        return count == 0 ? 0 : (double) sum.sum() / count;
+    }
+
+    /**
+     * @param percentile from 0 to 100, for example 99.9.
+     * @return the highest value of the bucket that contains the percentile, or 0 if nothing
+     * is recorded.
+     */
+    public long getValueAtPercentile(double percentile) {
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            total += counts.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long) Math.ceil(Math.min(percentile, 100) / 100 * total));
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(highestValueOf(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        count.reset();
+        sum.reset();
+        max.set(0);
+    }
+
+    static int indexOf(long value) {
+        if (value < EXACT_VALUES) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value);
+        int shift = magnitude - SUB_BUCKET_BITS;
+        int subBucket = (int) (value >>> shift) - SUB_BUCKETS;
+        return EXACT_VALUES + (magnitude - 5) * SUB_BUCKETS + subBucket;
+    }
+
+    static long highestValueOf(int index) {
+        if (index < EXACT_VALUES) {
+            return index;
+        }
+        int magnitude = (index - EXACT_VALUES) / SUB_BUCKETS + 5;
+        int subBucket = (index - EXACT_VALUES) % SUB_BUCKETS;
+        int shift = magnitude - SUB_BUCKET_BITS;
+        return ((long) (SUB_BUCKETS + subBucket + 1) << shift) - 1;
+    }
+
+    @Override
+    public String toString() {
+        return "Histogram{" +
+                "count=" + getCount() +
+                ", mean=" + getMean() +
+                ", p50=" + getValueAtPercentile(50) +
+                ", p99=" + getValueAtPercentile(99) +
+                ", max=" + getMax() +
+                '}';
+    }
+}
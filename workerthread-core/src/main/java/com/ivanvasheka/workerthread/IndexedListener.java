@@ -0,0 +1,41 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Adapts a subscriber with {@link Subscribe} methods to {@link EventListener}. Listeners of the
+ * same subscriber are equal, so the subscriber can be unsubscribed with a new adapter.
+ */
+final class IndexedListener implements EventListener {
+
+    final Object subscriber;
+    private final SubscriberMethods methods;
+
+    IndexedListener(@NonNull Object subscriber, @NonNull SubscriberMethods methods) {
+        this.subscriber = subscriber;
+        this.methods = methods;
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        methods.dispatch(subscriber, event);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        return subscriber.equals(((IndexedListener) o).subscriber);
+    }
+
+    @Override
+    public int hashCode() {
+        return subscriber.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return subscriber.toString();
+    }
+}
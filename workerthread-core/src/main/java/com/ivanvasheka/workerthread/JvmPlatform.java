@@ -0,0 +1,24 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Platform of a plain JVM: main thread deliveries go to a single event loop thread, linux
+ * priorities are mapped to Java thread priorities.
+ */
+final class JvmPlatform extends Platform {
+
+    @NonNull
+    @Override
+    public MainThreadDispatcher createMainThreadDispatcher() {
+        return new EventLoopDispatcher("WorkerThread Main");
+    }
+
+    @Override
+    public void setThreadPriority(int priority) {
+        // Linux priorities go from -20 (highest) to 19 (lowest), 0 is the normal one.
+        int javaPriority = Thread.NORM_PRIORITY - Math.round(priority / 5f);
+        Thread.currentThread().setPriority(
+                Math.max(Thread.MIN_PRIORITY, Math.min(Thread.MAX_PRIORITY, javaPriority)));
+    }
+}
@@ -0,0 +1,8 @@
+package com.ivanvasheka.workerthread;
+
+/**
+ * Body of a parallel loop, see {@link WorkerThread#parallelFor(int, int, int, LoopBody)}.
+ */
+public interface LoopBody {
+    void run(int index) throws Exception;
+}
@@ -0,0 +1,20 @@
+package com.ivanvasheka.workerthread;
+
+import java.util.concurrent.Executor;
+
+/**
+ * Runs event deliveries and result callbacks that are meant for the main thread.
+ * <p>
+ * Implementations must run runnables one by one, in the order they were passed, otherwise
+ * listeners would receive events concurrently and out of order. On Android the dispatcher is
+ * backed by the main Looper, on a plain JVM by {@link EventLoopDispatcher}. Other backends can be
+ * set with {@link Config.Builder#withMainThreadDispatcher(MainThreadDispatcher)}.
+ */
+public interface MainThreadDispatcher extends Executor {
+
+    /**
+     * @return <b>true</b> if called in the thread that runs the runnables. Producers are never
+     * blocked in this thread waiting for room in delivery queues, see {@link Config#OVERFLOW_BLOCK}.
+     */
+    boolean isDispatchThread();
+}
@@ -0,0 +1,186 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * {@link MetricsSink} that keeps the measurements in memory, to be read by the application,
+ * for example to be sent to analytics periodically.
+ * <pre>
+ * MetricsRecorder metrics = new MetricsRecorder();
+ * WorkerThread.init(Config.builder().withMetricsSink(metrics).build());
+ * ...
+ * long p99 = metrics.getDeliveryLatency().getValueAtPercentile(99);
+ * </pre>
+ */
+public final class MetricsRecorder implements MetricsSink {
+
+    private final Histogram queueDepth = new Histogram();
+    private final Histogram taskWaitTime = new Histogram();
+    private final Histogram taskRunTime = new Histogram();
+    private final ConcurrentHashMap<String, Histogram> taskRunTimeByTag =
+            new ConcurrentHashMap<>();
+    private final StripedCounter failedTasks = new StripedCounter();
+
+    private final Histogram pendingEvents = new Histogram();
+    private final Histogram deliveryLatency = new Histogram();
+    private volatile int storedEvents;
+    private final StripedCounter evictedEvents = new StripedCounter();
+    private final StripedCounter expiredEvents = new StripedCounter();
+
+    //region MetricsSink implementation
+
+    @Override
+    public void onTaskQueued(int queueDepth) {
+        this.queueDepth.record(queueDepth);
+    }
+
+    @Override
+    public void onTaskExecuted(@Nullable String tag, long waitNanos, long runNanos,
+            boolean failed) {
+        taskWaitTime.record(waitNanos);
+        taskRunTime.record(runNanos);
+        if (tag != null) {
+            histogramOf(tag).record(runNanos);
+        }
+        if (failed) {
+            failedTasks.increment();
+        }
+    }
+
+    @Override
+    public void onEventPosted(int pendingEvents) {
+        this.pendingEvents.record(pendingEvents);
+    }
+
+    @Override
+    public void onEventsStored(int storedEvents) {
+        this.storedEvents = storedEvents;
+    }
+
+    @Override
+    public void onEventsEvicted(int evicted, int expired) {
+        evictedEvents.add(evicted);
+        expiredEvents.add(expired);
+    }
+
+    @Override
+    public void onEventDelivered(@NonNull EventListener subscriber, long latencyNanos) {
+        deliveryLatency.record(latencyNanos);
+    }
+
+    //endregion
+
+    /**
+     * @return count of waiting tasks observed on every submission.
+     */
+    @NonNull
+    public Histogram getQueueDepth() {
+        return queueDepth;
+    }
+
+    /**
+     * @return time in nanoseconds from submission till the start of a task.
+     */
+    @NonNull
+    public Histogram getTaskWaitTime() {
+        return taskWaitTime;
+    }
+
+    /**
+     * @return run time in nanoseconds of all tasks.
+     */
+    @NonNull
+    public Histogram getTaskRunTime() {
+        return taskRunTime;
+    }
+
+    /**
+     * @param tag of tasks.
+     * @return run time in nanoseconds of tasks with the tag, or null if none of them has run.
+     */
+    @Nullable
+    public Histogram getTaskRunTime(@NonNull String tag) {
+        return taskRunTimeByTag.get(tag);
+    }
+
+    /**
+     * @return tags of tasks that have run.
+     */
+    @NonNull
+    public Set<String> getTaskTags() {
+        return Collections.unmodifiableSet(taskRunTimeByTag.keySet());
+    }
+
+    /**
+     * @return count of tasks that have thrown an exception.
+     */
+    public long getFailedTaskCount() {
+        return failedTasks.sum();
+    }
+
+    /**
+     * @return count of undelivered events observed on every post.
+     */
+    @NonNull
+    public Histogram getPendingEvents() {
+        return pendingEvents;
+    }
+
+    /**
+     * @return time in nanoseconds from posting of an event till its delivery.
+     */
+    @NonNull
+    public Histogram getDeliveryLatency() {
+        return deliveryLatency;
+    }
+
+    /**
+     * @return count of events that were waiting for subscribers after the last delivery.
+     */
+    public int getStoredEvents() {
+        return storedEvents;
+    }
+
+    /**
+     * @return count of stored events dropped because a capacity limit was reached.
+     */
+    public long getEvictedEventCount() {
+        return evictedEvents.sum();
+    }
+
+    /**
+     * @return count of stored events dropped because their time to live has passed.
+     */
+    public long getExpiredEventCount() {
+        return expiredEvents.sum();
+    }
+
+    public void reset() {
+        queueDepth.reset();
+        taskWaitTime.reset();
+        taskRunTime.reset();
+        taskRunTimeByTag.clear();
+        failedTasks.reset();
+        pendingEvents.reset();
+        deliveryLatency.reset();
+        evictedEvents.reset();
+        expiredEvents.reset();
+    }
+
+    private Histogram histogramOf(String tag) {
+        Histogram histogram = taskRunTimeByTag.get(tag);
+        if (histogram == null) {
+            Histogram created = new Histogram();
+            histogram = taskRunTimeByTag.putIfAbsent(tag, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+}
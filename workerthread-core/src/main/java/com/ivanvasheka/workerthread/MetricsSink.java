@@ -0,0 +1,64 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Receives measurements of tasks and event delivery, see
+ * {@link Config.Builder#withMetricsSink(MetricsSink)}. Methods are called from worker threads,
+ * posting threads and the main thread, often concurrently, so they must be thread safe and fast.
+ * {@link MetricsRecorder} is a ready to use implementation.
+ * <p>
+ * Times are in nanoseconds. When no sink is installed, nothing is measured.
+ */
+public interface MetricsSink {
+
+    /**
+     * Called after a task is passed to the executor.
+     *
+     * @param queueDepth count of tasks that wait for a free thread.
+     */
+    void onTaskQueued(int queueDepth);
+
+    /**
+     * Called after a task has run. Tasks cancelled before they started are not reported.
+     *
+     * @param tag       of the task, or null if the runnable is not a {@link Task}.
+     * @param waitNanos time from submission till the task started.
+     * @param runNanos  time the task was running.
+     * @param failed    whether the task has thrown an exception.
+     */
+    void onTaskExecuted(@Nullable String tag, long waitNanos, long runNanos, boolean failed);
+
+    /**
+     * Called when an event is posted.
+     *
+     * @param pendingEvents count of undelivered events, including the posted one, or 0 if the
+     *                      event is delivered right away.
+     */
+    void onEventPosted(int pendingEvents);
+
+    /**
+     * Called after posted events are moved to the store and stored events are delivered.
+     *
+     * @param storedEvents count of events that stay stored waiting for subscribers.
+     */
+    void onEventsStored(int storedEvents);
+
+    /**
+     * Called when stored events are dropped because of limits, see
+     * {@link Config.Builder#withStoredEventLimits(int, int)}.
+     *
+     * @param evicted count of events dropped because a capacity limit was reached.
+     * @param expired count of events dropped because their time to live has passed.
+     */
+    void onEventsEvicted(int evicted, int expired);
+
+    /**
+     * Called right before {@link EventListener#onEvent(Event)}.
+     *
+     * @param subscriber   receiving the event.
+     * @param latencyNanos time from posting till delivery.
+     */
+    void onEventDelivered(@NonNull EventListener subscriber, long latencyNanos);
+}
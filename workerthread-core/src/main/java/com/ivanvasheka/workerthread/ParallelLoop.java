@@ -0,0 +1,118 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Loop over a range of indices, that runs in parallel on the {@link StealingPool}.
+ * <p>
+ * The range is split in halves until parts are not bigger than the grain. Each worker keeps
+ * splitting its own part, while idle workers steal the other halves, so the load is balanced
+ * without knowing the cost of a single index. Result is completed when the last index is done.
+ *
+ * @param <T> type of the loop result.
+ */
+abstract class ParallelLoop<T> {
+
+    private final WorkerThread owner;
+    private final StealingPool pool;
+    private final int grain;
+    private final AtomicInteger remaining;
+    private final TaskResult<T> result;
+    @Nullable
+    private final Event completion;
+
+    private int size;
+
+    /**
+     * @param completion event to be posted when the loop is finished, or null.
+     */
+    ParallelLoop(@NonNull WorkerThread owner, @NonNull StealingPool pool, int grain,
+                 @Nullable Event completion) {
+        this.owner = owner;
+        this.pool = pool;
+        this.grain = grain;
+        this.completion = completion;
+        remaining = new AtomicInteger();
+        result = new TaskResult<>(owner);
+    }
+
+    /**
+     * Runs a single index.
+     */
+    abstract void run(int index) throws Exception;
+
+    /**
+     * @return result of the finished loop.
+     */
+    abstract T value();
+
+    /**
+     * Starts the loop over indices from <b>start</b> inclusive to <b>end</b> exclusive.
+     *
+     * @return result of the loop.
+     */
+    @NonNull
+    TaskResult<T> start(int start, int end) {
+        size = Math.max(0, end - start);
+        remaining.set(size);
+        if (size > 0) {
+            pool.execute(new Range(start, end));
+        } else {
+            finish(0);
+        }
+        return result;
+    }
+
+    private void finish(int count) {
+        if (remaining.addAndGet(-count) != 0) {
+            return;
+        }
+
+        T value = value();
+        if (result.succeed(value) && completion != null) {
+            if (!completion.hasNumber()) {
+                completion.setNumber(size);
+            }
+            if (completion.getData() == null) {
+                completion.setData(value);
+            }
+            owner.post(completion);
+        }
+    }
+
+    private final class Range implements Runnable {
+
+        private final int from;
+        private final int to;
+
+        Range(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void run() {
+            int end = to;
+            // Keep the first half, the other one can be stolen.
+            while (end - from > grain) {
+                int middle = from + (end - from) / 2;
+                pool.execute(new Range(middle, end));
+                end = middle;
+            }
+
+            if (!result.isDone()) {
+                try {
+                    for (int index = from; index < end; index++) {
+                        ParallelLoop.this.run(index);
+                    }
+                } catch (Throwable throwable) {
+                    result.fail(throwable);
+                }
+            }
+            finish(end - from);
+        }
+    }
+}
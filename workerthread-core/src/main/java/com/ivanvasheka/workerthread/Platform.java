@@ -0,0 +1,62 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Parts of {@link WorkerThread} that depend on the platform. The implementation is looked up with
+ * {@link ServiceLoader}, so platform modules only need to be on the classpath: the Android module
+ * registers the one backed by the main Looper. Without any, plain JVM implementation is used.
+ */
+public abstract class Platform {
+
+    private static volatile Platform instance;
+
+    static Platform get() {
+        if (instance == null) {
+            synchronized (Platform.class) {
+                if (instance == null) {
+                    instance = load();
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * @return dispatcher for main thread deliveries, used when
+     * {@link Config.Builder#withMainThreadDispatcher(MainThreadDispatcher)} is not set.
+     */
+    @NonNull
+    public abstract MainThreadDispatcher createMainThreadDispatcher();
+
+    /**
+     * Applies the priority to the current thread.
+     *
+     * @param priority linux priority, see {@link Config.Builder#withThreadPriority(int)}.
+     */
+    public abstract void setThreadPriority(int priority);
+
+    /**
+     * Begins a section of the system trace on the current thread. Does nothing by default.
+     *
+     * @param name of the section.
+     */
+    public void beginTraceSection(@NonNull String name) {
+    }
+
+    /**
+     * Ends the section started by {@link #beginTraceSection(String)} on the current thread.
+     */
+    public void endTraceSection() {
+    }
+
+    private static Platform load() {
+        Iterator<Platform> platforms =
+                ServiceLoader.load(Platform.class, Platform.class.getClassLoader()).iterator();
+        return platforms.hasNext() ? platforms.next() : new JvmPlatform();
+    }
+}
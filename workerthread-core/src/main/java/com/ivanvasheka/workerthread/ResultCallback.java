@@ -0,0 +1,19 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives the final outcome of a task on the main thread,
+ * see {@link TaskResult#deliver(ResultCallback)}.
+ *
+ * @param <T> type of the result.
+ */
+public interface ResultCallback<T> {
+    void onResult(T value);
+
+    /**
+     * @param error thrown by the task or one of its steps, or
+     *              {@link java.util.concurrent.CancellationException} if the task was cancelled.
+     */
+    void onError(@NonNull Throwable error);
+}
@@ -0,0 +1,132 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Delayed or periodic task. It waits in the {@link TimerWheel} without taking a thread, when the
+ * timeout fires the task is submitted to the executor. Periodic task is scheduled again only after
+ * the previous run is finished, so runs never overlap. Periodic task stops when it throws an
+ * exception, or when its run is cancelled.
+ */
+final class ScheduledTask implements TaskHandle, Runnable, TaskFuture.OnFinishedListener {
+
+    private final WorkerThread owner;
+    private final TimerWheel timer;
+    private final Runnable task;
+    private final int priority;
+    /**
+     * Period in nanoseconds: positive for the fixed rate, negative for the fixed delay,
+     * zero for a single run.
+     */
+    private final long period;
+    private final AtomicBoolean cancelled = new AtomicBoolean();
+
+    // Planned start of the next run, relative to System.nanoTime().
+    private long time;
+    private volatile boolean done;
+    @Nullable
+    private volatile TimerWheel.Timeout timeout;
+    @Nullable
+    private volatile TaskFuture<?> current;
+
+    ScheduledTask(@NonNull WorkerThread owner, @NonNull TimerWheel timer, @NonNull Runnable task,
+                  int priority, long delayNanos, long period) {
+        this.owner = owner;
+        this.timer = timer;
+        this.task = task;
+        this.priority = priority;
+        this.period = period;
+        time = System.nanoTime() + delayNanos;
+    }
+
+    void start() {
+        timeout = timer.schedule(this, time - System.nanoTime());
+    }
+
+    /**
+     * @return tag of the scheduled {@link Task}, or null if the runnable is not a task.
+     */
+    @Nullable
+    String getTag() {
+        return task instanceof Task ? ((Task) task).getTag() : null;
+    }
+
+    /**
+     * Fires on the timer thread and submits the next run.
+     */
+    @Override
+    public void run() {
+        if (cancelled.get()) {
+            return;
+        }
+
+        TaskFuture<Void> future = new TaskFuture<>(owner, task, priority);
+        future.setOnFinishedListener(this);
+        current = future;
+        if (cancelled.get()) {
+            future.cancel(false);
+            return;
+        }
+        try {
+            owner.submitInternal(future);
+        } catch (RejectedExecutionException e) {
+            // Rejected run is cancelled, that stops the schedule.
+        }
+    }
+
+    @Override
+    public void onFinished(@NonNull TaskFuture<?> future) {
+        if (period == 0 || cancelled.get() || future.isCancelled() || future.isFailed()) {
+            finish();
+            return;
+        }
+
+        time = period > 0 ? time + period : System.nanoTime() - period;
+        TimerWheel.Timeout next = timer.schedule(this, time - System.nanoTime());
+        timeout = next;
+        if (cancelled.get()) {
+            next.cancel();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (done || !cancelled.compareAndSet(false, true)) {
+            return false;
+        }
+
+        TimerWheel.Timeout timeout = this.timeout;
+        if (timeout != null) {
+            timeout.cancel();
+        }
+        TaskFuture<?> current = this.current;
+        if (current != null) {
+            current.cancel(mayInterruptIfRunning);
+        }
+        finish();
+        return true;
+    }
+
+    @Override
+    public boolean isCancelled() {
+        if (cancelled.get()) {
+            return true;
+        }
+        TaskFuture<?> current = this.current;
+        return done && current != null && current.isCancelled();
+    }
+
+    @Override
+    public boolean isDone() {
+        return done || cancelled.get();
+    }
+
+    private void finish() {
+        done = true;
+        owner.onScheduledTaskDone(this);
+    }
+}
@@ -0,0 +1,131 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs deliveries to one subscriber one by one, in order of submission, on the executor passed
+ * to {@link WorkerThread#subscribe(Object, Executor)}. The executor may have several threads and
+ * may be shared by several subscribers: each of them has its own serial executor, so different
+ * subscribers receive events in parallel, but a single subscriber never receives two at once.
+ * <p>
+ * If the executor rejects them, for example because it is shut down, waiting deliveries are
+ * dropped and their events are released, the next delivery tries the executor again.
+ */
+final class SerialExecutor implements Executor {
+
+    /**
+     * Delivery that holds events, which must be released if it is dropped without being run.
+     */
+    interface Droppable {
+
+        void drop();
+    }
+
+    private final Executor executor;
+    private final ArrayDeque<Runnable> waiting = new ArrayDeque<>();
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+    private boolean scheduled;
+    /**
+     * Thread that is running deliveries, it is never blocked by delivery queues.
+     */
+    @Nullable
+    private volatile Thread runner;
+
+    SerialExecutor(@NonNull Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable delivery) {
+        synchronized (this) {
+            waiting.add(delivery);
+            if (scheduled) {
+                return;
+            }
+            scheduled = true;
+        }
+        schedule();
+    }
+
+    /**
+     * @return <b>true</b> if deliveries of this executor run in the current thread, so
+     * the thread must not wait for them.
+     */
+    boolean isDispatchThread() {
+        if (executor instanceof MainThreadDispatcher) {
+            return ((MainThreadDispatcher) executor).isDispatchThread();
+        }
+        return runner == Thread.currentThread();
+    }
+
+    private void schedule() {
+        boolean accepted = false;
+        try {
+            executor.execute(drain);
+            accepted = true;
+        } catch (RejectedExecutionException e) {
+            // Must not reach posters, which may hold the events lock.
+            dropWaiting();
+        } finally {
+            if (!accepted) {
+                // Next delivery tries again.
+                synchronized (this) {
+                    scheduled = false;
+                }
+            }
+        }
+    }
+
+    private void dropWaiting() {
+        List<Runnable> dropped;
+        synchronized (this) {
+            dropped = new ArrayList<>(waiting);
+            waiting.clear();
+        }
+        for (Runnable delivery : dropped) {
+            if (delivery instanceof Droppable) {
+                ((Droppable) delivery).drop();
+            }
+        }
+    }
+
+    /**
+     * Runs waiting deliveries until there are none. If a subscriber throws, the rest is handed
+     * to the executor again.
+     */
+    private void drain() {
+        boolean idle = false;
+        runner = Thread.currentThread();
+        try {
+            while (true) {
+                Runnable delivery;
+                synchronized (this) {
+                    delivery = waiting.poll();
+                    if (delivery == null) {
+                        scheduled = false;
+                        idle = true;
+                        return;
+                    }
+                }
+                delivery.run();
+            }
+        } finally {
+            runner = null;
+            if (!idle) {
+                schedule();
+            }
+        }
+    }
+}
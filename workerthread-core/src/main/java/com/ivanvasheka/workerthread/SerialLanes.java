@@ -0,0 +1,116 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Runs tasks with the same key one by one, in order of submission, on the shared executor.
+ * Tasks with different keys run in parallel.
+ * <p>
+ * Each key has a lane: a queue of waiting tasks, from which only one task at a time is handed to
+ * the executor. Lanes are created on the first task and removed as soon as they drain, so only
+ * keys with waiting or running tasks take memory.
+ */
+final class SerialLanes {
+
+    private final WorkerThread owner;
+    private final ConcurrentHashMap<Object, Lane> lanes = new ConcurrentHashMap<>();
+
+    SerialLanes(@NonNull WorkerThread owner) {
+        this.owner = owner;
+    }
+
+    /**
+     * Puts the task at the end of the lane of the key, starts it if the lane is idle.
+     *
+     * @param key    of the lane.
+     * @param future task to be executed.
+     */
+    void enqueue(@NonNull Object key, @NonNull TaskFuture<?> future) {
+        while (true) {
+            Lane lane = lanes.get(key);
+            if (lane == null) {
+                Lane created = new Lane(key);
+                lane = lanes.putIfAbsent(key, created);
+                if (lane == null) {
+                    lane = created;
+                }
+            }
+
+            synchronized (lane) {
+                if (lane.removed) {
+                    // Lane drained and was removed concurrently, create a new one.
+                    continue;
+                }
+
+                // Lane is set before the check, so the cancellation either is seen here,
+                // or reaches the lane and waits for the monitor.
+                future.setOnFinishedListener(lane);
+                if (future.isCancelled()) {
+                    if (lane.current == null) {
+                        lane.removed = true;
+                        lanes.remove(key, lane);
+                    }
+                    return;
+                }
+                if (lane.current != null) {
+                    lane.waiting.add(future);
+                    return;
+                }
+                lane.current = future;
+            }
+            owner.dispatch(future);
+            return;
+        }
+    }
+
+    /**
+     * Lane of a single key. Guarded by its own monitor.
+     */
+    private final class Lane implements TaskFuture.OnFinishedListener {
+
+        private final Object key;
+        private final ArrayDeque<TaskFuture<?>> waiting = new ArrayDeque<>();
+        private TaskFuture<?> current;
+        private boolean removed;
+
+        Lane(Object key) {
+            this.key = key;
+        }
+
+        /**
+         * Starts the next task, or removes the drained lane.
+         *
+         * @param future finished task.
+         */
+        @Override
+        public void onFinished(@NonNull TaskFuture<?> future) {
+            TaskFuture<?> next;
+            synchronized (this) {
+                if (current != future) {
+                    // Task was cancelled while waiting in the lane.
+                    waiting.remove(future);
+                    return;
+                }
+
+                next = waiting.poll();
+                current = next;
+                if (next == null) {
+                    removed = true;
+                    lanes.remove(key, this);
+                }
+            }
+            if (next != null) {
+                try {
+                    owner.dispatch(next);
+                } catch (RejectedExecutionException e) {
+                    // Rejected task is already cancelled and the lane moved on, there is no
+                    // caller to report to.
+                }
+            }
+        }
+    }
+}
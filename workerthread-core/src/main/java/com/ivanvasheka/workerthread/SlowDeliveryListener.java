@@ -0,0 +1,30 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+/**
+ * Receives reports of main thread deliveries that took longer than the configured budget, see
+ * {@link Config.Builder#withSlowDeliveryThreshold(long)}. Methods are called on the main thread.
+ */
+public interface SlowDeliveryListener {
+
+    /**
+     * Called right after a slow {@link EventListener#onEvent(Event)} returned.
+     *
+     * @param subscriber    that received the event.
+     * @param event         that was delivered. It may be recycled after the method returns, so it
+     *                      must not be kept.
+     * @param durationNanos time spent in onEvent.
+     */
+    void onSlowDelivery(@NonNull EventListener subscriber, @NonNull Event event,
+            long durationNanos);
+
+    /**
+     * Called when the subscriber exceeded the allowed count of slow deliveries and further
+     * events are delivered to it in a background thread,
+     * see {@link Config.Builder#withSlowSubscriberDemotion(int)}.
+     *
+     * @param subscriber that was moved off the main thread.
+     */
+    void onSubscriberDemoted(@NonNull EventListener subscriber);
+}
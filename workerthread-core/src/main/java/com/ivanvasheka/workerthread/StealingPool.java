@@ -0,0 +1,137 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Work stealing pool for CPU bound work, one thread per processor.
+ * <p>
+ * Each worker has its own deque: it pushes and takes its own jobs from the tail, so recently split
+ * work stays hot in the cache, while idle workers steal from the head, where the biggest parts of
+ * split work are. Jobs submitted from other threads go to the shared queue. Threads are started
+ * with the first job.
+ */
+final class StealingPool {
+
+    private final Worker[] workers;
+    private final ConcurrentLinkedQueue<Runnable> submissions = new ConcurrentLinkedQueue<>();
+    private final ThreadLocal<Worker> currentWorker = new ThreadLocal<>();
+    private final ThreadFactory threadFactory;
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final AtomicInteger idle = new AtomicInteger();
+    private final Object idleLock = new Object();
+
+    StealingPool(int parallelism, @NonNull ThreadFactory threadFactory) {
+        this.threadFactory = threadFactory;
+        workers = new Worker[parallelism];
+        for (int i = 0; i < parallelism; i++) {
+            workers[i] = new Worker(i);
+        }
+    }
+
+    int getParallelism() {
+        return workers.length;
+    }
+
+    /**
+     * Schedules the job. Called from a worker it goes to the worker's own deque,
+     * otherwise to the shared queue.
+     *
+     * @param job to be executed.
+     */
+    void execute(@NonNull Runnable job) {
+        if (!started.get() && started.compareAndSet(false, true)) {
+            for (Worker worker : workers) {
+                Thread thread = threadFactory.newThread(worker);
+                thread.setDaemon(true);
+                thread.start();
+            }
+        }
+
+        Worker worker = currentWorker.get();
+        if (worker != null) {
+            worker.push(job);
+        } else {
+            submissions.add(job);
+        }
+        if (idle.get() > 0) {
+            synchronized (idleLock) {
+                idleLock.notify();
+            }
+        }
+    }
+
+    private Runnable findJob(Worker self) {
+        Runnable job = self.pop();
+        if (job == null) {
+            job = submissions.poll();
+        }
+        for (int i = 1; job == null && i < workers.length; i++) {
+            job = workers[(self.index + i) % workers.length].steal();
+        }
+        return job;
+    }
+
+    private final class Worker implements Runnable {
+
+        private final int index;
+        private final ArrayDeque<Runnable> deque = new ArrayDeque<>();
+
+        Worker(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public void run() {
+            currentWorker.set(this);
+            while (true) {
+                Runnable job = findJob(this);
+                if (job != null) {
+                    job.run();
+                    continue;
+                }
+
+                synchronized (idleLock) {
+                    idle.incrementAndGet();
+                    try {
+                        // Check again after becoming idle, so a job pushed meanwhile is not missed.
+                        job = findJob(this);
+                        if (job == null) {
+                            idleLock.wait();
+                        }
+                    } catch (InterruptedException e) {
+                        return;
+                    } finally {
+                        idle.decrementAndGet();
+                    }
+                }
+                if (job != null) {
+                    job.run();
+                }
+            }
+        }
+
+        void push(Runnable job) {
+            synchronized (deque) {
+                deque.addLast(job);
+            }
+        }
+
+        Runnable pop() {
+            synchronized (deque) {
+                return deque.pollLast();
+            }
+        }
+
+        Runnable steal() {
+            synchronized (deque) {
+                return deque.pollFirst();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.ivanvasheka.workerthread;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counter that is updated by many threads at once. Threads add to separate cells, which are
+ * summed up on read, so they do not contend for a single value.
+ */
+public final class StripedCounter {
+
+    /**
+     * Distance between used cells of the array, so each cell is on its own cache line.
+     */
+    private static final int PADDING = 8;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedCounter() {
+        int stripes = 1;
+        while (stripes < Runtime.getRuntime().availableProcessors() * 2) {
+            stripes <<= 1;
+        }
+        cells = new AtomicLongArray(stripes * PADDING);
+        mask = stripes - 1;
+    }
+
+    public void increment() {
+        add(1);
+    }
+
+    public void add(long delta) {
+        cells.addAndGet(cell(), delta);
+    }
+
+    /**
+     * @return sum of all updates. Not an atomic snapshot while the counter is updated.
+     */
+    public long sum() {
+        long sum = 0;
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            sum += cells.get(i);
+        }
+        return sum;
+    }
+
+    public void reset() {
+        for (int i = 0; i < cells.length(); i += PADDING) {
+            cells.set(i, 0);
+        }
+    }
+
+    private int cell() {
+        // Fibonacci hashing spreads sequential thread ids over the stripes.
+        int hash = (int) Thread.currentThread().getId() * 0x9E3779B9;
+        return ((hash >>> 16) & mask) * PADDING;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(sum());
+    }
+}
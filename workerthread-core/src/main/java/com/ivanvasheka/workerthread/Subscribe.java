@@ -0,0 +1,23 @@
+package com.ivanvasheka.workerthread;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Marks a method that receives events, as an alternative to implementing {@link EventListener}.
+ * The method must be public, not static, and take a single {@link Event} or subclass
+ * parameter, it receives events of that class and its subclasses.
+ * <p>
+ * Methods are found at build time by the workerthread-compiler annotation processor, which
+ * generates a {@link SubscriberIndex} to be passed to
+ * {@link Config.Builder#withSubscriberIndex(SubscriberIndex)}. Subscribe the object with
+ * {@link WorkerThread#subscribe(Object)}, no reflection is used at runtime.
+ */
+@Documented
+@Retention(RetentionPolicy.CLASS)
+@Target(ElementType.METHOD)
+public @interface Subscribe {
+}
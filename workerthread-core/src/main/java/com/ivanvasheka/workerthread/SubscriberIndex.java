@@ -0,0 +1,18 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Maps subscriber classes to their {@link Subscribe} methods. Implementations are generated by
+ * the workerthread-compiler annotation processor.
+ */
+public interface SubscriberIndex {
+
+    /**
+     * @param subscriberClass class of the subscriber.
+     * @return methods declared in the class or inherited by it, or null if the class has none.
+     */
+    @Nullable
+    SubscriberMethods getSubscriberMethods(@NonNull Class<?> subscriberClass);
+}
@@ -0,0 +1,32 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+/**
+ * {@link Subscribe} methods of one subscriber class, invoked directly. Subclasses are generated
+ * by the workerthread-compiler annotation processor.
+ */
+public abstract class SubscriberMethods {
+
+    private final Class<?>[] eventTypes;
+
+    /**
+     * @param eventTypes parameter classes of the methods.
+     */
+    protected SubscriberMethods(@NonNull Class<?>... eventTypes) {
+        this.eventTypes = eventTypes;
+    }
+
+    @NonNull
+    Class<?>[] getEventTypes() {
+        return eventTypes;
+    }
+
+    /**
+     * Invokes every method of the subscriber, that accepts the event.
+     *
+     * @param subscriber instance of the indexed class.
+     * @param event      to be delivered.
+     */
+    public abstract void dispatch(@NonNull Object subscriber, @NonNull Event event);
+}
@@ -0,0 +1,250 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+
+/**
+ * Immutable snapshot of subscriptions, indexed by listener class.
+ * Modifications return a new snapshot, so readers never need a lock.
+ * <p>
+ * When some subscriptions are limited to certain event classes, targets are filtered by the class
+ * of the event. Filtered targets are computed once per event class and cached in the snapshot.
+ */
+final class Subscribers {
+
+    private static final Subscription[] NONE = new Subscription[0];
+
+    static final Subscribers EMPTY =
+            new Subscribers(NONE, new HashMap<Class<?>, Subscription[]>());
+
+    private final Subscription[] all;
+    private final Map<Class<?>, Subscription[]> byClass;
+    /**
+     * Targets by event class, used only if some subscription is typed.
+     */
+    @Nullable
+    private final ConcurrentHashMap<Class<?>, Route> routes;
+
+    private Subscribers(Subscription[] all, Map<Class<?>, Subscription[]> byClass) {
+        this.all = all;
+        this.byClass = byClass;
+
+        boolean typed = false;
+        for (Subscription subscription : all) {
+            typed |= subscription.isTyped();
+        }
+        routes = typed ? new ConcurrentHashMap<Class<?>, Route>() : null;
+    }
+
+    boolean isEmpty() {
+        return all.length == 0;
+    }
+
+    boolean contains(@NonNull EventListener listener) {
+        return indexOf(all, listener) >= 0;
+    }
+
+    /**
+     * @return subscription of the same subscriber as the listener, or null if it is not subscribed.
+     */
+    @Nullable
+    Subscription find(@NonNull EventListener listener) {
+        int position = indexOf(all, listener);
+        return position >= 0 ? all[position] : null;
+    }
+
+    /**
+     * @return classes of subscribed listeners.
+     */
+    @NonNull
+    Set<Class<?>> classes() {
+        return byClass.keySet();
+    }
+
+    /**
+     * Returns subscriptions that should receive the event: all of them for broadcast events, or
+     * subscriptions of the event subscriber class otherwise. Subscriptions that are not
+     * interested in the class of the event are left out.
+     *
+     * @param event to be delivered.
+     * @return subscriptions, empty if there are subscriptions but none of them is interested in
+     * the event, or null if there are none.
+     */
+    @Nullable
+    Subscription[] targetsOf(@NonNull Event event) {
+        Class<?> subscriber = event.getSubscriber();
+        if (routes == null) {
+            if (subscriber == null) {
+                return all.length == 0 ? null : all;
+            } else {
+                return byClass.get(subscriber);
+            }
+        }
+
+        Route route = routeOf(event.getClass());
+        return subscriber == null ? route.all : route.byClass.get(subscriber);
+    }
+
+    @NonNull
+    Subscribers plus(@NonNull EventListener listener) {
+        return plus(listener, null, null);
+    }
+
+    /**
+     * @param eventTypes classes of events the listener receives, null or empty for all events.
+     * @param executor   that delivers events to the listener, null for the default delivery.
+     */
+    @NonNull
+    Subscribers plus(@NonNull EventListener listener, @Nullable Class<?>[] eventTypes,
+            @Nullable Executor executor) {
+        if (contains(listener)) {
+            return this;
+        }
+
+        Subscription subscription = new Subscription(listener, eventTypes, executor);
+        Map<Class<?>, Subscription[]> index = new HashMap<>(byClass);
+        Class<?> type = subscription.targetClass;
+        Subscription[] sameClass = index.get(type);
+        index.put(type, sameClass == null
+                ? new Subscription[]{subscription}
+                : append(sameClass, subscription));
+        return new Subscribers(append(all, subscription), index);
+    }
+
+    @NonNull
+    Subscribers minus(@NonNull EventListener listener) {
+        int position = indexOf(all, listener);
+        if (position < 0) {
+            return this;
+        }
+
+        return minus(all[position]);
+    }
+
+    /**
+     * @return whether some of the subscriptions are weak and their subscribers are garbage
+     * collected, which the reference queue may not have reported yet.
+     */
+    boolean hasCleared() {
+        return containsCleared(all);
+    }
+
+    static boolean containsCleared(@Nullable Subscription[] subscriptions) {
+        if (subscriptions != null) {
+            for (Subscription subscription : subscriptions) {
+                if (subscription.isCleared()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return snapshot without weak subscriptions whose subscribers are garbage collected.
+     */
+    @NonNull
+    Subscribers withoutCleared() {
+        Subscribers result = this;
+        for (Subscription subscription : all) {
+            if (subscription.isCleared()) {
+                result = result.minus(subscription);
+            }
+        }
+        return result;
+    }
+
+    private Subscribers minus(Subscription subscription) {
+        Map<Class<?>, Subscription[]> index = new HashMap<>(byClass);
+        Class<?> type = subscription.targetClass;
+        Subscription[] sameClass = remove(index.get(type), subscription);
+        if (sameClass.length == 0) {
+            index.remove(type);
+        } else {
+            index.put(type, sameClass);
+        }
+        return new Subscribers(remove(all, subscription), index);
+    }
+
+    private Route routeOf(Class<?> eventClass) {
+        Route route = routes.get(eventClass);
+        if (route == null) {
+            route = new Route(this, eventClass);
+            Route existing = routes.putIfAbsent(eventClass, route);
+            if (existing != null) {
+                route = existing;
+            }
+        }
+        return route;
+    }
+
+    private static Subscription[] filter(Subscription[] array, Class<?> eventClass) {
+        List<Subscription> accepted = new ArrayList<>(array.length);
+        for (Subscription subscription : array) {
+            if (subscription.accepts(eventClass)) {
+                accepted.add(subscription);
+            }
+        }
+        return accepted.size() == array.length
+                ? array : accepted.toArray(new Subscription[accepted.size()]);
+    }
+
+    private static int indexOf(Subscription[] array, EventListener listener) {
+        for (int i = 0; i < array.length; i++) {
+            if (array[i].matches(listener)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static Subscription[] append(Subscription[] array, Subscription subscription) {
+        Subscription[] result = new Subscription[array.length + 1];
+        System.arraycopy(array, 0, result, 0, array.length);
+        result[array.length] = subscription;
+        return result;
+    }
+
+    private static Subscription[] remove(Subscription[] array, Subscription subscription) {
+        int index = -1;
+        for (int i = 0; i < array.length; i++) {
+            if (array[i] == subscription) {
+                index = i;
+                break;
+            }
+        }
+        if (index < 0) {
+            return array;
+        }
+        Subscription[] result = new Subscription[array.length - 1];
+        System.arraycopy(array, 0, result, 0, index);
+        System.arraycopy(array, index + 1, result, index, array.length - index - 1);
+        return result;
+    }
+
+    /**
+     * Targets of events of one class.
+     */
+    private static final class Route {
+
+        @Nullable
+        final Subscription[] all;
+        final Map<Class<?>, Subscription[]> byClass;
+
+        Route(Subscribers subscribers, Class<?> eventClass) {
+            all = subscribers.all.length == 0 ? null : filter(subscribers.all, eventClass);
+            byClass = new HashMap<>(subscribers.byClass.size());
+            for (Map.Entry<Class<?>, Subscription[]> entry : subscribers.byClass.entrySet()) {
+                byClass.put(entry.getKey(), filter(entry.getValue(), eventClass));
+            }
+        }
+    }
+}
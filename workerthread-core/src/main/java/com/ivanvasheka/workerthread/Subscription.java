@@ -0,0 +1,274 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Subscribed listener together with its delivery state.
+ */
+final class Subscription {
+
+    final EventListener listener;
+    /**
+     * Class of the subscriber, that targeted events use to address it.
+     */
+    final Class<?> targetClass;
+    /**
+     * Event classes the listener is interested in, null for all events.
+     */
+    @Nullable
+    private final Set<Class<?>> eventTypes;
+    /**
+     * Delivers events instead of the main thread or the source thread, null for the default
+     * delivery.
+     */
+    @Nullable
+    final SerialExecutor executor;
+
+    private final ConcurrentHashMap<Class<?>, ConflationSlot> latestSlots;
+    @Nullable
+    private volatile DeliveryQueue deliveryQueue;
+    /**
+     * Incremented on every main thread delivery that does not go through a conflation slot, so
+     * slots scheduled before it are not reused for later events.
+     */
+    private final AtomicInteger barrier;
+
+    /**
+     * Executor that receives main thread deliveries once the subscriber is demoted for being slow.
+     */
+    @Nullable
+    private volatile Executor background;
+    /**
+     * Count of threads that are handing deliveries to the main thread, so demotion can tell
+     * when they are done.
+     */
+    private final AtomicInteger dispatching;
+    /**
+     * Run once by the thread that sees the demotion and no thread dispatching.
+     */
+    private final AtomicReference<Runnable> afterDispatching;
+    // Changed only by main thread deliveries, which run one by one.
+    private int slowDeliveries;
+    @Nullable
+    private String traceSection;
+
+    Subscription(@NonNull EventListener listener) {
+        this(listener, null, null);
+    }
+
+    Subscription(@NonNull EventListener listener, @Nullable Class<?>[] eventTypes,
+            @Nullable Executor executor) {
+        this.listener = listener;
+        targetClass = subscriberOf(listener).getClass();
+        this.eventTypes = eventTypes != null && eventTypes.length > 0
+                ? new HashSet<>(Arrays.asList(eventTypes)) : null;
+        this.executor = executor != null ? new SerialExecutor(executor) : null;
+        latestSlots = new ConcurrentHashMap<>();
+        barrier = new AtomicInteger();
+        dispatching = new AtomicInteger();
+        afterDispatching = new AtomicReference<>();
+    }
+
+    /**
+     * Returns the slot that holds the latest undelivered main thread event of the passed class.
+     *
+     * @param eventClass class of {@link Event#TYPE_LATEST_ONLY} event.
+     * @return slot, never null.
+     */
+    @NonNull
+    ConflationSlot latestSlot(@NonNull Class<?> eventClass) {
+        ConflationSlot slot = latestSlots.get(eventClass);
+        if (slot == null) {
+            ConflationSlot created = new ConflationSlot(this);
+            slot = latestSlots.putIfAbsent(eventClass, created);
+            if (slot == null) {
+                slot = created;
+            }
+        }
+        return slot;
+    }
+
+    /**
+     * Returns the bounded queue of main thread deliveries, created on the first call.
+     *
+     * @param capacity of the queue.
+     * @param strategy applied when the queue is full.
+     * @return queue, never null.
+     */
+    @NonNull
+    DeliveryQueue deliveryQueue(int capacity, @Config.OverflowStrategy int strategy) {
+        return deliveryQueue(capacity, strategy, null);
+    }
+
+    /**
+     * Returns the bounded queue of main thread deliveries, created on the first call. A new queue
+     * starts after the retired queue of the previous subscription of the same subscriber.
+     *
+     * @param retiredQueues queues of unsubscribed subscribers with undelivered events.
+     */
+    @NonNull
+    DeliveryQueue deliveryQueue(int capacity, @Config.OverflowStrategy int strategy,
+            @Nullable ConcurrentMap<Object, DeliveryQueue> retiredQueues) {
+        DeliveryQueue queue = deliveryQueue;
+        if (queue == null) {
+            synchronized (this) {
+                queue = deliveryQueue;
+                if (queue == null) {
+                    Object subscriber = subscriberOf(listener);
+                    DeliveryQueue predecessor = retiredQueues != null && subscriber != null
+                            ? retiredQueues.get(subscriber) : null;
+                    queue = new DeliveryQueue(this, capacity, strategy, predecessor);
+                    deliveryQueue = queue;
+                }
+            }
+        }
+        return queue;
+    }
+
+    /**
+     * Called when unsubscribed, keeps the delivery queue in the map while it has undelivered
+     * events, so the next subscription of the subscriber does not overtake them.
+     */
+    void retireDeliveryQueue(@NonNull ConcurrentMap<Object, DeliveryQueue> retiredQueues) {
+        DeliveryQueue queue = deliveryQueue;
+        Object subscriber = subscriberOf(listener);
+        if (queue != null && subscriber != null) {
+            queue.retire(retiredQueues, subscriber);
+        }
+    }
+
+    /**
+     * @param listener passed to subscribe or unsubscribe.
+     * @return <b>true</b> if this subscription is of the same subscriber.
+     */
+    boolean matches(@NonNull EventListener listener) {
+        Object subscriber = subscriberOf(this.listener);
+        return subscriber != null && subscriber.equals(subscriberOf(listener));
+    }
+
+    /**
+     * @return <b>true</b> if the subscriber was referenced weakly and is garbage collected.
+     */
+    boolean isCleared() {
+        return listener instanceof WeakListener && ((WeakListener) listener).get() == null;
+    }
+
+    boolean isTyped() {
+        return eventTypes != null;
+    }
+
+    /**
+     * @param eventClass class of the event to be delivered.
+     * @return <b>true</b> if the listener is interested in events of the class.
+     */
+    boolean accepts(@NonNull Class<?> eventClass) {
+        if (eventTypes == null) {
+            return true;
+        }
+        for (Class<?> type : EventTypes.supertypesOf(eventClass)) {
+            if (eventTypes.contains(type)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    int barrier() {
+        return barrier.get();
+    }
+
+    void raiseBarrier() {
+        barrier.incrementAndGet();
+    }
+
+    /**
+     * Hands the delivery to the main thread, or to the background executor if the subscriber
+     * is demoted.
+     */
+    void execute(@NonNull Executor mainThread, @NonNull Runnable delivery) {
+        dispatching.incrementAndGet();
+        Executor background = this.background;
+        if (background != null) {
+            finishDispatching();
+            background.execute(delivery);
+            return;
+        }
+
+        try {
+            mainThread.execute(delivery);
+        } finally {
+            finishDispatching();
+        }
+    }
+
+    boolean isDemoted() {
+        return background != null;
+    }
+
+    /**
+     * Moves further main thread deliveries to the background executor.
+     *
+     * @param afterDispatching run once threads, that have not seen the demotion, finish handing
+     *                         their deliveries to the main thread. Run by the last of them, or
+     *                         right away if there are none, it must not block.
+     */
+    void demote(@NonNull Executor background, @NonNull Runnable afterDispatching) {
+        this.afterDispatching.set(afterDispatching);
+        this.background = background;
+        if (dispatching.get() == 0) {
+            runAfterDispatching();
+        }
+    }
+
+    private void finishDispatching() {
+        if (dispatching.decrementAndGet() == 0 && background != null) {
+            runAfterDispatching();
+        }
+    }
+
+    private void runAfterDispatching() {
+        Runnable runnable = afterDispatching.getAndSet(null);
+        if (runnable != null) {
+            runnable.run();
+        }
+    }
+
+    /**
+     * @return count of slow deliveries including this one.
+     */
+    int onSlowDelivery() {
+        return ++slowDeliveries;
+    }
+
+    @NonNull
+    String traceSection() {
+        if (traceSection == null) {
+            traceSection = "onEvent " + targetClass.getName();
+        }
+        return traceSection;
+    }
+
+    /**
+     * @return the object that was subscribed, or null if it was referenced weakly and is
+     * garbage collected.
+     */
+    @Nullable
+    private static Object subscriberOf(EventListener listener) {
+        if (listener instanceof IndexedListener) {
+            return ((IndexedListener) listener).subscriber;
+        } else if (listener instanceof WeakListener) {
+            return ((WeakListener) listener).get();
+        }
+        return listener;
+    }
+}
@@ -0,0 +1,84 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+public abstract class Task implements Runnable {
+
+    private String tag;
+    /**
+     * Whether the tag is registered in {@link WorkerThread}. Tasks submitted to WorkerThread are
+     * registered on submission, other tasks when they start.
+     */
+    volatile boolean registered;
+    @Nullable
+    private volatile TaskHandle handle;
+
+    public Task() {
+        // Anonymous and local classes have no canonical name.
+        String name = getClass().getCanonicalName();
+        tag = name != null ? name : getClass().getName();
+    }
+
+    public Task(@NonNull String tag) {
+        if (tag == null) {
+            throw new IllegalArgumentException("Task tag cannot be null.");
+        }
+
+        this.tag = tag;
+    }
+
+    @Override
+    public void run() {
+        if (!registered) {
+            WorkerThread.get().registerRunningTask(tag, null);
+        }
+        try {
+            execute();
+        } finally {
+            registered = false;
+            WorkerThread.get().unregisterRunningTask(tag);
+            onExecuted();
+        }
+    }
+
+    /**
+     * Checks whether the task was cancelled through its {@link TaskHandle}, or with
+     * {@link WorkerThread#cancel(String)}. Long running tasks should check it periodically
+     * and stop early.
+     *
+     * @return <b>true</b> if the task was cancelled.
+     */
+    public boolean isCancelled() {
+        TaskHandle handle = this.handle;
+        return handle != null && handle.isCancelled();
+    }
+
+    @NonNull
+    String getTag() {
+        return tag;
+    }
+
+    void onSubmitted(@NonNull TaskHandle handle) {
+        WorkerThread.get().registerRunningTask(tag, handle);
+        onRegistered(handle);
+    }
+
+    void onRegistered(@NonNull TaskHandle handle) {
+        this.handle = handle;
+        registered = true;
+    }
+
+    void onDiscarded() {
+        if (registered) {
+            registered = false;
+            WorkerThread.get().unregisterRunningTask(tag);
+        }
+    }
+
+    public abstract void execute();
+
+    public void onExecuted() {
+
+    }
+}
\ No newline at end of file
@@ -0,0 +1,173 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Task submitted to the executor, that also serves as its {@link TaskHandle}. Tasks with higher
+ * priority are ordered first, tasks with equal priority keep the order of submission.
+ */
+class TaskFuture<T> extends FutureTask<T> implements TaskHandle, Comparable<TaskFuture<?>> {
+
+    private static final AtomicLong sequencer = new AtomicLong();
+
+    private final WorkerThread owner;
+    private final Body<T> body;
+    private final int priority;
+    private final long sequence;
+    // Time of submission, set only when metrics are collected.
+    private final long submittedNanos;
+    @Nullable
+    private volatile OnFinishedListener listener;
+    private volatile boolean failed;
+
+    TaskFuture(@NonNull WorkerThread owner, @NonNull Runnable task, int priority) {
+        this(owner, new Body<T>(task), priority);
+    }
+
+    private TaskFuture(WorkerThread owner, Body<T> body, int priority) {
+        super(body);
+        this.owner = owner;
+        this.body = body;
+        this.priority = priority;
+        sequence = sequencer.getAndIncrement();
+        submittedNanos = owner.metrics != null ? System.nanoTime() : 0;
+    }
+
+    /**
+     * @return submitted runnable.
+     */
+    @NonNull
+    Runnable getTask() {
+        return body.task;
+    }
+
+    /**
+     * @return tag of the submitted {@link Task}, or null if the runnable is not a task.
+     */
+    @Nullable
+    String getTag() {
+        return body.task instanceof Task ? ((Task) body.task).getTag() : null;
+    }
+
+    void setOnFinishedListener(@NonNull OnFinishedListener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * @return <b>true</b> if the task has thrown an exception.
+     */
+    boolean isFailed() {
+        return failed;
+    }
+
+    @Override
+    public void run() {
+        MetricsSink metrics = owner.metrics;
+        long startNanos = metrics != null ? System.nanoTime() : 0;
+        super.run();
+        if (body.started) {
+            if (metrics != null) {
+                metrics.onTaskExecuted(getTag(), startNanos - submittedNanos,
+                        System.nanoTime() - startNanos, failed);
+            }
+            onFinished();
+        }
+    }
+
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        boolean cancelled = super.cancel(mayInterruptIfRunning);
+        if (cancelled) {
+            owner.removeQueuedTask(this);
+        }
+        return cancelled;
+    }
+
+    @Override
+    protected void done() {
+        // Task that is cancelled before it started will never run, so release its tag here.
+        if (isCancelled() && body.claimed.compareAndSet(false, true)) {
+            if (body.task instanceof Task) {
+                ((Task) body.task).onDiscarded();
+            }
+            onFinished();
+        }
+        owner.onTaskDone(this);
+    }
+
+    @Override
+    protected void setException(Throwable throwable) {
+        boolean cancelled = isCancelled();
+        super.setException(throwable);
+
+        if (!cancelled) {
+            failed = true;
+
+            // Keep the behaviour of plain executors: failure of a task is an uncaught exception.
+            Thread thread = Thread.currentThread();
+            Thread.UncaughtExceptionHandler handler = thread.getUncaughtExceptionHandler();
+            if (handler != null) {
+                handler.uncaughtException(thread, throwable);
+            }
+        }
+    }
+
+    @Override
+    public int compareTo(@NonNull TaskFuture<?> other) {
+        if (priority != other.priority) {
+            return priority > other.priority ? -1 : 1;
+        }
+        return sequence < other.sequence ? -1 : (sequence == other.sequence ? 0 : 1);
+    }
+
+    /**
+     * Called exactly once, after the task has run or when it was cancelled before it started.
+     */
+    private void onFinished() {
+        OnFinishedListener listener = this.listener;
+        if (listener != null) {
+            listener.onFinished(this);
+        }
+    }
+
+    /**
+     * Listener of the task, that has to know when the task is over, either after it has run or
+     * when it was cancelled before it started. Unlike {@link #done()}, cancellation of a running
+     * task is reported only when the task actually returns.
+     */
+    interface OnFinishedListener {
+
+        void onFinished(@NonNull TaskFuture<?> future);
+    }
+
+    /**
+     * Runs the task unless it was claimed by the cancellation, so exactly one of them
+     * takes care of the task.
+     */
+    private static final class Body<T> implements Callable<T> {
+
+        final Runnable task;
+        final AtomicBoolean claimed = new AtomicBoolean();
+        // Written and read by the thread that runs the future.
+        boolean started;
+
+        Body(Runnable task) {
+            this.task = task;
+        }
+
+        @Override
+        public T call() throws Exception {
+            if (claimed.compareAndSet(false, true)) {
+                started = true;
+                task.run();
+            }
+            return null;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+package com.ivanvasheka.workerthread;
+
+/**
+ * Handle of the task submitted to {@link WorkerThread}, allows to cancel the task and to check
+ * its state.
+ */
+public interface TaskHandle {
+
+    /**
+     * Attempts to cancel the task. Waiting task is removed from the queue and will never run.
+     * Running task can check {@link Task#isCancelled()} to stop early.
+     *
+     * @param mayInterruptIfRunning <b>true</b> if the thread that runs the task should be
+     *                              interrupted.
+     * @return <b>false</b> if the task could not be cancelled, because it is already completed.
+     */
+    boolean cancel(boolean mayInterruptIfRunning);
+
+    /**
+     * @return <b>true</b> if the task was cancelled before it completed.
+     */
+    boolean isCancelled();
+
+    /**
+     * @return <b>true</b> if the task completed, failed or was cancelled.
+     */
+    boolean isDone();
+}
@@ -0,0 +1,104 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Counts tasks that are waiting or running, per tag. Tag stays registered until the last of its
+ * tasks is finished.
+ */
+final class TaskRegistry {
+
+    private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
+
+    /**
+     * @param tag    of the task.
+     * @param handle of the task, or null if the task is not submitted to WorkerThread.
+     */
+    void register(@NonNull String tag, @Nullable TaskHandle handle) {
+        increment(tag, handle, false);
+    }
+
+    /**
+     * Registers the tag only if there are no tasks with this tag, atomically.
+     *
+     * @param tag    of the task.
+     * @param handle of the task.
+     * @return <b>true</b> if the tag was registered, <b>false</b> if the task with this tag is
+     * already registered.
+     */
+    boolean registerIfAbsent(@NonNull String tag, @NonNull TaskHandle handle) {
+        return increment(tag, handle, true);
+    }
+
+    void unregister(@NonNull String tag) {
+        Counter counter = counters.get(tag);
+        if (counter != null) {
+            synchronized (counter) {
+                if (counter.count > 0 && --counter.count == 0) {
+                    counter.removed = true;
+                    counters.remove(tag, counter);
+                }
+            }
+        }
+    }
+
+    boolean isRegistered(@NonNull String tag) {
+        return counters.containsKey(tag);
+    }
+
+    int count(@NonNull String tag) {
+        Counter counter = counters.get(tag);
+        return counter == null ? 0 : counter.count;
+    }
+
+    /**
+     * @return handle of the task that registered the tag first, while the tag is registered,
+     * or null if there is none.
+     */
+    @Nullable
+    TaskHandle handleOf(@NonNull String tag) {
+        Counter counter = counters.get(tag);
+        return counter == null ? null : counter.handle;
+    }
+
+    private boolean increment(String tag, TaskHandle handle, boolean onlyIfAbsent) {
+        while (true) {
+            Counter counter = counters.get(tag);
+            if (counter == null) {
+                Counter created = new Counter(handle);
+                counter = counters.putIfAbsent(tag, created);
+                if (counter == null) {
+                    return true;
+                }
+            }
+
+            synchronized (counter) {
+                if (!counter.removed) {
+                    if (onlyIfAbsent) {
+                        return false;
+                    }
+                    counter.count++;
+                    if (counter.handle == null) {
+                        counter.handle = handle;
+                    }
+                    return true;
+                }
+            }
+            // Counter was removed concurrently, register a new one.
+        }
+    }
+
+    private static final class Counter {
+
+        volatile int count = 1;
+        volatile TaskHandle handle;
+        boolean removed;
+
+        Counter(TaskHandle handle) {
+            this.handle = handle;
+        }
+    }
+}
@@ -0,0 +1,376 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Result of a task submitted with {@link WorkerThread#submit(Callable)}.
+ * <p>
+ * Further steps are chained with continuations, that are started when the result is ready, so no
+ * thread is blocked while waiting for it. Failure or cancellation skips the following steps and
+ * is passed down the chain. The final outcome is handed to a {@link ResultCallback} on the main
+ * thread directly, without going through events.
+ *
+ * @param <T> type of the result.
+ */
+public final class TaskResult<T> implements TaskHandle {
+
+    private static final int STATE_PENDING = 0;
+    private static final int STATE_SUCCEEDED = 1;
+    private static final int STATE_FAILED = 2;
+    private static final int STATE_CANCELLED = 3;
+
+    private final WorkerThread owner;
+
+    // Guarded by this.
+    private int state;
+    private T value;
+    private Throwable error;
+    private List<Runnable> listeners;
+
+    // Task that computes the result right now, if there is one.
+    @Nullable
+    private volatile TaskHandle source;
+
+    TaskResult(@NonNull WorkerThread owner) {
+        this.owner = owner;
+    }
+
+    //region Continuations
+
+    /**
+     * Transforms the result in a background thread, once it is ready.
+     *
+     * @param continuation to be executed with the result.
+     * @param <R>          type of the new result.
+     * @return result of the continuation.
+     */
+    @NonNull
+    public <R> TaskResult<R> thenOnWorker(
+            @NonNull final Continuation<? super T, ? extends R> continuation) {
+        final TaskResult<R> next = new TaskResult<>(owner);
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (next.propagateFailure(TaskResult.this)) {
+                    return;
+                }
+                next.runOnWorker(new Runnable() {
+                    @Override
+                    public void run() {
+                        next.compute(continuation, valueUnchecked());
+                    }
+                }, WorkerThread.PRIORITY_NORMAL);
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Transforms the result in the main thread, once it is ready.
+     *
+     * @param continuation to be executed with the result.
+     * @param <R>          type of the new result.
+     * @return result of the continuation.
+     */
+    @NonNull
+    public <R> TaskResult<R> thenOnMain(
+            @NonNull final Continuation<? super T, ? extends R> continuation) {
+        final TaskResult<R> next = new TaskResult<>(owner);
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                if (next.propagateFailure(TaskResult.this)) {
+                    return;
+                }
+                owner.runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!next.isDone()) {
+                            next.compute(continuation, valueUnchecked());
+                        }
+                    }
+                });
+            }
+        });
+        return next;
+    }
+
+    /**
+     * Joins this result with the other one in a background thread, once both are ready.
+     * If any of them fails or is cancelled, joined result fails or is cancelled as well.
+     *
+     * @param other    result to be joined.
+     * @param combiner to be executed with both results.
+     * @param <U>      type of the other result.
+     * @param <R>      type of the joined result.
+     * @return result of the combiner.
+     */
+    @NonNull
+    public <U, R> TaskResult<R> combine(
+            @NonNull final TaskResult<U> other,
+            @NonNull final Combiner<? super T, ? super U, ? extends R> combiner) {
+        final TaskResult<R> next = new TaskResult<>(owner);
+        final AtomicInteger remaining = new AtomicInteger(2);
+        Runnable listener = new Runnable() {
+            @Override
+            public void run() {
+                if (next.propagateFailure(TaskResult.this) || next.propagateFailure(other)) {
+                    return;
+                }
+                if (remaining.decrementAndGet() == 0) {
+                    next.runOnWorker(new Runnable() {
+                        @Override
+                        public void run() {
+                            try {
+                                next.succeed(combiner.combine(
+                                        valueUnchecked(), other.valueUnchecked()));
+                            } catch (Throwable throwable) {
+                                next.fail(throwable);
+                            }
+                        }
+                    }, WorkerThread.PRIORITY_NORMAL);
+                }
+            }
+        };
+        addListener(listener);
+        other.addListener(listener);
+        return next;
+    }
+
+    /**
+     * Delivers the outcome to the callback in the main thread, once it is ready.
+     *
+     * @param callback to receive the result or the error.
+     * @return this result.
+     */
+    @NonNull
+    public TaskResult<T> deliver(@NonNull final ResultCallback<? super T> callback) {
+        addListener(new Runnable() {
+            @Override
+            public void run() {
+                owner.runOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        Throwable error = getError();
+                        if (error == null) {
+                            callback.onResult(valueUnchecked());
+                        } else {
+                            callback.onError(error);
+                        }
+                    }
+                });
+            }
+        });
+        return this;
+    }
+
+    //endregion
+
+    //region State
+
+    /**
+     * Cancels the step that computes this result. Following steps are cancelled as well,
+     * previous steps keep running.
+     */
+    @Override
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        if (!complete(STATE_CANCELLED, null, new CancellationException())) {
+            return false;
+        }
+        TaskHandle source = this.source;
+        if (source != null) {
+            source.cancel(mayInterruptIfRunning);
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized boolean isCancelled() {
+        return state == STATE_CANCELLED;
+    }
+
+    @Override
+    public synchronized boolean isDone() {
+        return state != STATE_PENDING;
+    }
+
+    /**
+     * @return <b>true</b> if the task or one of previous steps has thrown an exception.
+     */
+    public synchronized boolean isFailed() {
+        return state == STATE_FAILED;
+    }
+
+    /**
+     * Returns the result without waiting.
+     *
+     * @return the result.
+     * @throws IllegalStateException if the result is not ready yet, or there is no result
+     *                               because of failure or cancellation.
+     */
+    public synchronized T getValue() {
+        if (state != STATE_SUCCEEDED) {
+            throw new IllegalStateException("Result is not available, state: " + state);
+        }
+        return value;
+    }
+
+    /**
+     * Waits for the result, must not be used in the main thread.
+     *
+     * @return the result.
+     * @throws InterruptedException  if the waiting thread was interrupted.
+     * @throws ExecutionException    if the task or one of previous steps has thrown an exception.
+     * @throws CancellationException if the task was cancelled.
+     */
+    public synchronized T await() throws InterruptedException, ExecutionException {
+        while (state == STATE_PENDING) {
+            wait();
+        }
+        if (state == STATE_FAILED) {
+            throw new ExecutionException(error);
+        }
+        if (state == STATE_CANCELLED) {
+            throw (CancellationException) error;
+        }
+        return value;
+    }
+
+    /**
+     * @return error thrown by the task or one of previous steps, or
+     * {@link CancellationException} if the task was cancelled, or null.
+     */
+    @Nullable
+    public synchronized Throwable getError() {
+        return error;
+    }
+
+    //endregion
+
+    //region Package private methods
+
+    /**
+     * Computes the result with the callable in a background thread.
+     */
+    void start(@NonNull final Callable<? extends T> task, int priority) {
+        runOnWorker(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    succeed(task.call());
+                } catch (Throwable throwable) {
+                    fail(throwable);
+                }
+            }
+        }, priority);
+    }
+
+    boolean succeed(T value) {
+        return complete(STATE_SUCCEEDED, value, null);
+    }
+
+    boolean fail(@NonNull Throwable error) {
+        return complete(STATE_FAILED, null, error);
+    }
+
+    //endregion
+
+    private void runOnWorker(Runnable body, int priority) {
+        TaskFuture<Void> future = new TaskFuture<>(owner, body, priority);
+        future.setOnFinishedListener(new TaskFuture.OnFinishedListener() {
+            @Override
+            public void onFinished(@NonNull TaskFuture<?> future) {
+                // Task that was cancelled or discarded before it started never completes
+                // the result by itself.
+                if (future.isCancelled()) {
+                    cancel(false);
+                }
+            }
+        });
+        source = future;
+        if (isDone()) {
+            // Cancelled while the task was created.
+            future.cancel(false);
+            return;
+        }
+        try {
+            owner.submitInternal(future);
+        } catch (RejectedExecutionException e) {
+            fail(e);
+        }
+    }
+
+    private <V> void compute(Continuation<? super V, ? extends T> continuation, V input) {
+        try {
+            succeed(continuation.then(input));
+        } catch (Throwable throwable) {
+            fail(throwable);
+        }
+    }
+
+    /**
+     * Completes this result the same way as the finished previous one, if it has not succeeded.
+     *
+     * @return <b>true</b> if previous result has failed or was cancelled.
+     */
+    private boolean propagateFailure(TaskResult<?> previous) {
+        int previousState;
+        Throwable previousError;
+        synchronized (previous) {
+            previousState = previous.state;
+            previousError = previous.error;
+        }
+        if (previousState == STATE_FAILED || previousState == STATE_CANCELLED) {
+            complete(previousState, null, previousError);
+            return true;
+        }
+        return false;
+    }
+
+    private boolean complete(int state, T value, Throwable error) {
+        List<Runnable> listeners;
+        synchronized (this) {
+            if (this.state != STATE_PENDING) {
+                return false;
+            }
+            this.state = state;
+            this.value = value;
+            this.error = error;
+            listeners = this.listeners;
+            this.listeners = null;
+            notifyAll();
+        }
+        if (listeners != null) {
+            for (Runnable listener : listeners) {
+                listener.run();
+            }
+        }
+        return true;
+    }
+
+    private void addListener(Runnable listener) {
+        synchronized (this) {
+            if (state == STATE_PENDING) {
+                if (listeners == null) {
+                    listeners = new ArrayList<>(2);
+                }
+                listeners.add(listener);
+                return;
+            }
+        }
+        listener.run();
+    }
+
+    private synchronized T valueUnchecked() {
+        return value;
+    }
+}
@@ -0,0 +1,235 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hashed timer wheel, that fires timeouts on a single thread.
+ * <p>
+ * Time is split into ticks, the wheel is a ring of buckets, one per tick. A timeout is put into
+ * the bucket of its deadline tick and remembers how many full turns of the wheel are left, so
+ * scheduling and cancellation are O(1) regardless of the count of pending timeouts. Timeouts fire
+ * at the end of their deadline tick. Timer thread is started with the first timeout and waits
+ * without ticking while there are no pending timeouts.
+ * <p>
+ * Timeout targets are run on the timer thread, they must be short and must not throw. They are
+ * expected to hand the real work over to an executor.
+ */
+final class TimerWheel {
+
+    private static final int WHEEL_SIZE = 512;
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private final Bucket[] wheel;
+    private final ConcurrentLinkedQueue<Timeout> additions = new ConcurrentLinkedQueue<>();
+    private final ConcurrentLinkedQueue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean started = new AtomicBoolean();
+    private final Object idleLock = new Object();
+    private final long startTime;
+
+    // Accessed by the timer thread only.
+    private long tick;
+
+    TimerWheel() {
+        wheel = new Bucket[WHEEL_SIZE];
+        for (int i = 0; i < WHEEL_SIZE; i++) {
+            wheel[i] = new Bucket();
+        }
+        startTime = System.nanoTime();
+    }
+
+    /**
+     * Schedules the target to be run on the timer thread after the delay.
+     *
+     * @param target     to be run.
+     * @param delayNanos delay, negative or zero delay fires on the next tick.
+     * @return timeout, that can be cancelled.
+     */
+    @NonNull
+    Timeout schedule(@NonNull Runnable target, long delayNanos) {
+        long deadline = System.nanoTime() - startTime + Math.max(0, delayNanos);
+        Timeout timeout = new Timeout(target, deadline);
+        additions.add(timeout);
+        if (pending.getAndIncrement() == 0) {
+            synchronized (idleLock) {
+                idleLock.notifyAll();
+            }
+        }
+        if (!started.get() && started.compareAndSet(false, true)) {
+            Thread thread = new Thread(new Worker(), "WorkerThread Timer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return timeout;
+    }
+
+    private final class Worker implements Runnable {
+
+        @Override
+        public void run() {
+            while (true) {
+                if (!awaitTick()) {
+                    return;
+                }
+                processCancellations();
+                transferAdditions();
+                Bucket bucket = wheel[(int) (tick & (WHEEL_SIZE - 1))];
+                bucket.expire();
+                tick++;
+            }
+        }
+
+        /**
+         * Sleeps until the end of the current tick, or while there are no pending timeouts.
+         *
+         * @return <b>false</b> if the thread was interrupted.
+         */
+        private boolean awaitTick() {
+            try {
+                if (pending.get() == 0) {
+                    synchronized (idleLock) {
+                        while (pending.get() == 0) {
+                            idleLock.wait();
+                        }
+                    }
+                    // Wheel is empty, so skipped ticks have nothing to expire.
+                    tick = Math.max(tick, (System.nanoTime() - startTime) / TICK_NANOS);
+                }
+
+                long deadline = (tick + 1) * TICK_NANOS;
+                long sleepNanos;
+                while ((sleepNanos = deadline - (System.nanoTime() - startTime)) > 0) {
+                    Thread.sleep(TimeUnit.NANOSECONDS.toMillis(sleepNanos + 999999));
+                }
+                return true;
+            } catch (InterruptedException e) {
+                return false;
+            }
+        }
+
+        private void processCancellations() {
+            Timeout timeout;
+            while ((timeout = cancellations.poll()) != null) {
+                if (timeout.bucket != null) {
+                    timeout.bucket.remove(timeout);
+                }
+            }
+        }
+
+        private void transferAdditions() {
+            Timeout timeout;
+            while ((timeout = additions.poll()) != null) {
+                if (timeout.state.get() != Timeout.STATE_PENDING) {
+                    pending.decrementAndGet();
+                    continue;
+                }
+
+                // Bucket of a tick is expired when the tick ends, so rounding down is enough.
+                long deadlineTick = timeout.deadline / TICK_NANOS;
+                timeout.remainingRounds = (deadlineTick - tick) / WHEEL_SIZE;
+                // Deadlines that are already missed go to the current bucket.
+                long targetTick = Math.max(deadlineTick, tick);
+                wheel[(int) (targetTick & (WHEEL_SIZE - 1))].add(timeout);
+            }
+        }
+    }
+
+    /**
+     * Scheduled run of a target.
+     */
+    final class Timeout {
+
+        static final int STATE_PENDING = 0;
+        static final int STATE_CANCELLED = 1;
+        static final int STATE_EXPIRED = 2;
+
+        private final Runnable target;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(STATE_PENDING);
+
+        // Accessed by the timer thread only.
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout previous;
+        private Timeout next;
+
+        Timeout(Runnable target, long deadline) {
+            this.target = target;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the timeout, if it has not fired yet.
+         *
+         * @return <b>true</b> if the timeout was cancelled.
+         */
+        boolean cancel() {
+            if (!state.compareAndSet(STATE_PENDING, STATE_CANCELLED)) {
+                return false;
+            }
+            cancellations.add(this);
+            return true;
+        }
+    }
+
+    /**
+     * Timeouts of a single tick, kept in a doubly linked list.
+     */
+    private final class Bucket {
+
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.previous = tail;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.previous == null) {
+                head = timeout.next;
+            } else {
+                timeout.previous.next = timeout.next;
+            }
+            if (timeout.next == null) {
+                tail = timeout.previous;
+            } else {
+                timeout.next.previous = timeout.previous;
+            }
+            timeout.previous = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            pending.decrementAndGet();
+        }
+
+        /**
+         * Fires timeouts that are due in this turn of the wheel.
+         */
+        void expire() {
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    if (timeout.state.compareAndSet(Timeout.STATE_PENDING, Timeout.STATE_EXPIRED)) {
+                        timeout.target.run();
+                    }
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+
+/**
+ * Listener that references its subscriber weakly, so a subscriber that was not unsubscribed can
+ * still be garbage collected. Events for a collected subscriber are skipped, the listener is
+ * enqueued to the reference queue and pruned from subscribers by {@link WorkerThread}.
+ */
+final class WeakListener extends WeakReference<Object> implements EventListener {
+
+    @Nullable
+    private final SubscriberMethods methods;
+    private final int hashCode;
+
+    /**
+     * @param subscriber {@link EventListener}, or object with indexed methods.
+     * @param methods    of the subscriber, or null if it is a listener.
+     * @param queue      to receive the listener when the subscriber is collected.
+     */
+    WeakListener(@NonNull Object subscriber, @Nullable SubscriberMethods methods,
+            @NonNull ReferenceQueue<Object> queue) {
+        super(subscriber, queue);
+        this.methods = methods;
+        hashCode = subscriber.hashCode();
+    }
+
+    @Override
+    public void onEvent(Event event) {
+        Object subscriber = get();
+        if (subscriber == null) {
+            return;
+        }
+
+        if (methods != null) {
+            methods.dispatch(subscriber, event);
+        } else {
+            ((EventListener) subscriber).onEvent(event);
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        Object subscriber = get();
+        return subscriber != null && subscriber.equals(((WeakListener) o).get());
+    }
+
+    @Override
+    public int hashCode() {
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return String.valueOf(get());
+    }
+}
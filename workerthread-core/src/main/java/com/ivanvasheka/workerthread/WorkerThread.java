@@ -0,0 +1,1472 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.lang.ref.ReferenceQueue;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+
+public final class WorkerThread {
+
+    /**
+     * Priority of tasks that prefetch or prepare data that may be needed later.
+     */
+    public static final int PRIORITY_LOW = -10;
+
+    /**
+     * Default priority of tasks.
+     */
+    public static final int PRIORITY_NORMAL = 0;
+
+    /**
+     * Priority of tasks that the user is waiting for.
+     */
+    public static final int PRIORITY_HIGH = 10;
+
+    private static volatile WorkerThread instance;
+    private static final EventBridge[] NO_BRIDGES = new EventBridge[0];
+
+    private final ThreadPoolExecutor executor;
+    private final MainThreadDispatcher mainThread;
+    @Nullable
+    final MetricsSink metrics;
+    @Nullable
+    private final DeliveryWatchdog watchdog;
+    private final int deliveryQueueCapacity;
+    @Config.OverflowStrategy
+    private final int overflowStrategy;
+    /**
+     * Delivery queues of unsubscribed subscribers that still have undelivered events, by
+     * subscriber. Queues of their next subscriptions wait for them.
+     */
+    private final ConcurrentHashMap<Object, DeliveryQueue> retiredQueues;
+    private final List<SubscriberIndex> subscriberIndexes;
+    private final ConcurrentHashMap<Class<?>, SubscriberMethods> subscriberMethods;
+
+    private final TaskRegistry tasks;
+    private final Set<TaskFuture<?>> futures;
+    private final SerialLanes lanes;
+    private final TimerWheel timer;
+    private final Set<ScheduledTask> scheduled;
+    private final StealingPool parallelPool;
+
+    private volatile Subscribers subscribers;
+    private final Object subscribersLock;
+    /**
+     * Receives weak listeners of garbage collected subscribers, they are pruned from
+     * {@link #subscribers} on the next post or subscribe.
+     */
+    private final ReferenceQueue<Object> clearedSubscribers;
+
+    /**
+     * Events are posted to the lock free inbox and moved into the {@link #events} store by the
+     * thread that holds {@link #eventsLock}. Posting threads only take the lock when nobody else
+     * is draining, so they never wait for each other.
+     */
+    private final ConcurrentLinkedQueue<Event> inbox;
+    private final EventStore events;
+    private final ReentrantLock eventsLock;
+    private final AtomicInteger drainRequests;
+    /**
+     * Count of posted events that are not yet delivered or dropped: the ones in the inbox plus the
+     * ones in the store. While it is zero events can be delivered right from the posting thread.
+     */
+    private final AtomicInteger backlog;
+    /**
+     * Counts of evicted and expired events already passed to the metrics sink, guarded by
+     * {@link #eventsLock}.
+     */
+    private long reportedEvicted;
+    private long reportedExpired;
+    /**
+     * Whether events journaled by the previous process are not restored yet.
+     */
+    private volatile boolean journalPending;
+    /**
+     * Bridges that forward posted events to other processes, replaced on change.
+     */
+    private volatile EventBridge[] bridges;
+    private final Object bridgesLock;
+
+    //region Singleton implementation
+
+    WorkerThread(Config config) {
+        executor = createExecutor(config);
+        MainThreadDispatcher dispatcher = config.getMainThreadDispatcher();
+        mainThread = dispatcher != null ? dispatcher : Platform.get().createMainThreadDispatcher();
+        metrics = config.getMetricsSink();
+        watchdog = DeliveryWatchdog.create(this, config);
+        deliveryQueueCapacity = config.getDeliveryQueueCapacity();
+        overflowStrategy = config.getOverflowStrategy();
+        retiredQueues = new ConcurrentHashMap<>();
+        subscriberIndexes = new ArrayList<>(config.getSubscriberIndexes());
+        subscriberMethods = new ConcurrentHashMap<>();
+
+        tasks = new TaskRegistry();
+        futures = Collections.newSetFromMap(new ConcurrentHashMap<TaskFuture<?>, Boolean>());
+        lanes = new SerialLanes(this);
+        timer = new TimerWheel();
+        scheduled = Collections.newSetFromMap(new ConcurrentHashMap<ScheduledTask, Boolean>());
+        parallelPool = new StealingPool(Runtime.getRuntime().availableProcessors(),
+                new WorkerThreadFactory("WorkerThread Parallel", config.getThreadPriority()));
+
+        subscribers = Subscribers.EMPTY;
+        subscribersLock = new Object();
+        clearedSubscribers = new ReferenceQueue<>();
+
+        inbox = new ConcurrentLinkedQueue<>();
+        events = new EventStore(config.getMaxStoredEventsPerSubscriber(),
+                config.getMaxStoredEvents(),
+                TimeUnit.MILLISECONDS.toNanos(config.getStoredEventTtlMillis()),
+                config.getEvictionPolicy(),
+                config.getJournalFile() != null ? new EventJournal(config.getJournalFile()) : null);
+        journalPending = config.getJournalFile() != null;
+        eventsLock = new ReentrantLock();
+        drainRequests = new AtomicInteger();
+        backlog = new AtomicInteger();
+        bridges = NO_BRIDGES;
+        bridgesLock = new Object();
+    }
+
+    /**
+     * Returns a WorkerThread instance.
+     *
+     * @return <b>WorkerTread</b> instance.
+     */
+    public static WorkerThread get() {
+        if (instance == null) {
+            synchronized (WorkerThread.class) {
+                if (instance == null) {
+                    instance = new WorkerThread(Config.defaults());
+                }
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Creates a WorkerThread instance with the passed configuration. Must be called only once and
+     * before the first call to {@link #get()}, for example in Application#onCreate() on Android.
+     *
+     * @param config of the executor.
+     * @throws IllegalStateException if the instance is already created.
+     */
+    public static void init(@NonNull Config config) {
+        synchronized (WorkerThread.class) {
+            if (instance != null) {
+                throw new IllegalStateException("WorkerThread is already initialized.");
+            }
+            instance = new WorkerThread(config);
+        }
+    }
+
+    private static ThreadPoolExecutor createExecutor(Config config) {
+        BlockingQueue<Runnable> queue;
+        switch (config.getQueueType()) {
+            case Config.QUEUE_FIFO:
+                queue = config.getQueueCapacity() > 0
+                        ? new LinkedBlockingQueue<Runnable>(config.getQueueCapacity())
+                        : new LinkedBlockingQueue<Runnable>();
+                break;
+            case Config.QUEUE_DIRECT:
+                queue = new SynchronousQueue<>();
+                break;
+            default:
+                queue = config.getQueueCapacity() > 0
+                        ? new BoundedPriorityQueue<Runnable>(config.getQueueCapacity())
+                        : new PriorityBlockingQueue<Runnable>();
+                break;
+        }
+
+        return new ThreadPoolExecutor(config.getCorePoolSize(), config.getMaxPoolSize(),
+                config.getKeepAliveSeconds(), TimeUnit.SECONDS, queue,
+                new WorkerThreadFactory("WorkerThread", config.getThreadPriority()),
+                new RejectionHandler(config.getRejectionPolicy()));
+    }
+
+    //endregion
+
+    //region Public methods
+
+    /**
+     * Executes a single task. Execution will go in a background (non ui) thread.
+     *
+     * @param task to be executed.
+     * @return handle of the task.
+     */
+    public TaskHandle execute(@NonNull Runnable task) {
+        return execute(task, PRIORITY_NORMAL);
+    }
+
+    /**
+     * Executes a single task with the passed priority. Execution will go in a background (non ui)
+     * thread. If all threads are busy, tasks with higher priority are started first, when
+     * the executor is configured with {@link Config#QUEUE_PRIORITY} queue.
+     *
+     * @param task     to be executed.
+     * @param priority of the task, for example {@link #PRIORITY_HIGH}.
+     * @return handle of the task.
+     */
+    public TaskHandle execute(@NonNull Runnable task, int priority) {
+        return submit(new TaskFuture<Void>(this, task, priority));
+    }
+
+    /**
+     * Executes a single task. Execution will go in a background (non ui) thread.
+     * Use <b>tag</b> parameter as a unique identifier to each separate task. Must not be null.
+     * Can be used with method {@link WorkerThread#isRunning(String)} as a parameter
+     * to check if task is still running.
+     *
+     * @param task to be executed.
+     * @param tag  that represents this task.
+     * @return handle of the task.
+     */
+    public TaskHandle execute(@NonNull Runnable task, @NonNull String tag) {
+        return execute(task, tag, PRIORITY_NORMAL);
+    }
+
+    /**
+     * Same as {@link #execute(Runnable, String)}, but with the passed priority.
+     *
+     * @param task     to be executed.
+     * @param tag      that represents this task.
+     * @param priority of the task, for example {@link #PRIORITY_HIGH}.
+     * @return handle of the task.
+     * @see #execute(Runnable, int)
+     */
+    public TaskHandle execute(@NonNull Runnable task, @NonNull String tag, int priority) {
+        return execute(wrap(task, tag), priority);
+    }
+
+    /**
+     * Executes the task only if there is no waiting or running task with the same <b>tag</b>.
+     * Unlike checking {@link #isRunning(String)} before {@link #execute(Runnable, String)}, check
+     * and submission happen atomically, so only one of concurrent callers starts the task.
+     *
+     * @param tag  that represents this task.
+     * @param task to be executed.
+     * @return handle of the submitted task, or handle of the task with the same tag that is
+     * already in flight.
+     */
+    public TaskHandle executeIfNotRunning(@NonNull String tag, @NonNull Runnable task) {
+        Task taskWrapper = wrap(task, tag);
+        TaskFuture<Void> future = new TaskFuture<>(this, taskWrapper, PRIORITY_NORMAL);
+        if (!tasks.registerIfAbsent(tag, future)) {
+            TaskHandle inFlight = tasks.handleOf(tag);
+            return inFlight != null ? inFlight : new TagHandle(tag);
+        }
+
+        taskWrapper.onRegistered(future);
+        return submit(future);
+    }
+
+    /**
+     * Executes the task after all previously submitted tasks with the same <b>key</b> are
+     * finished. Tasks with the same key run one by one in order of submission, tasks with
+     * different keys run in parallel on the same threads as other tasks.
+     * <p>
+     * Keys are compared with {@link Object#equals(Object)}, for example an account id can be used
+     * to keep writes for the account ordered. Nothing is kept for the key once its tasks are done.
+     *
+     * @param key  that orders tasks.
+     * @param task to be executed.
+     * @return handle of the task. Cancelling a waiting task does not hold back later tasks
+     * with the same key.
+     */
+    public TaskHandle executeOrdered(@NonNull Object key, @NonNull Runnable task) {
+        TaskFuture<Void> future = new TaskFuture<>(this, task, PRIORITY_NORMAL);
+        track(future);
+        lanes.enqueue(key, future);
+        return future;
+    }
+
+    /**
+     * Computes a result in a background (non ui) thread. Use the returned {@link TaskResult} to
+     * chain further steps and to receive the result in the main thread.
+     *
+     * @param task that computes the result.
+     * @param <T>  type of the result.
+     * @return result of the task.
+     */
+    public <T> TaskResult<T> submit(@NonNull Callable<T> task) {
+        return submit(task, PRIORITY_NORMAL);
+    }
+
+    /**
+     * Same as {@link #submit(Callable)}, but with the passed priority.
+     *
+     * @param task     that computes the result.
+     * @param priority of the task, for example {@link #PRIORITY_HIGH}.
+     * @param <T>      type of the result.
+     * @return result of the task.
+     */
+    public <T> TaskResult<T> submit(@NonNull Callable<T> task, int priority) {
+        TaskResult<T> result = new TaskResult<>(this);
+        result.start(task, priority);
+        return result;
+    }
+
+    /**
+     * Runs the body for every index from <b>start</b> inclusive to <b>end</b> exclusive, in
+     * parallel on a separate pool with one thread per processor. Meant for CPU bound work, like
+     * decoding an image by rows. Range is split into parts of at most <b>grain</b> indices, threads
+     * that finished their parts take over parts of others.
+     *
+     * @param start first index.
+     * @param end   index after the last one.
+     * @param grain maximal count of indices that run as a single part.
+     * @param body  to be executed for every index.
+     * @return result, that is completed when all indices are done, or fails with the first error.
+     */
+    public TaskResult<Void> parallelFor(int start, int end, int grain, @NonNull LoopBody body) {
+        return parallelFor(start, end, grain, body, null);
+    }
+
+    /**
+     * Same as {@link #parallelFor(int, int, int, LoopBody)}, and posts the <b>completion</b> event
+     * once all indices are done. If the event has no number, count of indices is set as number.
+     *
+     * @param start      first index.
+     * @param end        index after the last one.
+     * @param grain      maximal count of indices that run as a single part.
+     * @param body       to be executed for every index.
+     * @param completion event to be posted on success, or null.
+     * @return result, that is completed when all indices are done, or fails with the first error.
+     */
+    public TaskResult<Void> parallelFor(int start, int end, int grain, @NonNull final LoopBody body,
+                                        @Nullable Event completion) {
+        if (grain < 1) {
+            throw new IllegalArgumentException("Grain must be positive.");
+        }
+
+        return new ParallelLoop<Void>(this, parallelPool, grain, completion) {
+            @Override
+            void run(int index) throws Exception {
+                body.run(index);
+            }
+
+            @Override
+            Void value() {
+                return null;
+            }
+        }.start(start, end);
+    }
+
+    /**
+     * Maps every item of the list in parallel, the same way as
+     * {@link #parallelFor(int, int, int, LoopBody)}. Mapped items keep the order of the list.
+     *
+     * @param list     to be mapped.
+     * @param function to be applied to every item.
+     * @param <T>      type of items.
+     * @param <R>      type of mapped items.
+     * @return result with mapped items.
+     */
+    public <T, R> TaskResult<List<R>> parallelMap(
+            @NonNull List<T> list, @NonNull Continuation<? super T, ? extends R> function) {
+        return parallelMap(list, function, null);
+    }
+
+    /**
+     * Same as {@link #parallelMap(List, Continuation)}, and posts the <b>completion</b> event
+     * once all items are mapped. If the event has no number, count of items is set as number,
+     * if it has no data, list of mapped items is set as data.
+     *
+     * @param list       to be mapped.
+     * @param function   to be applied to every item.
+     * @param completion event to be posted on success, or null.
+     * @param <T>        type of items.
+     * @param <R>        type of mapped items.
+     * @return result with mapped items.
+     */
+    public <T, R> TaskResult<List<R>> parallelMap(
+            @NonNull final List<T> list,
+            @NonNull final Continuation<? super T, ? extends R> function,
+            @Nullable Event completion) {
+        // Several parts per thread, so threads that finish early can help the others.
+        int grain = Math.max(1, list.size() / (parallelPool.getParallelism() * 8));
+        final Object[] mapped = new Object[list.size()];
+        return new ParallelLoop<List<R>>(this, parallelPool, grain, completion) {
+            @Override
+            void run(int index) throws Exception {
+                mapped[index] = function.then(list.get(index));
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            List<R> value() {
+                // Every item was set by the function, which returns R.
+                return (List<R>) Arrays.asList(mapped);
+            }
+        }.start(0, mapped.length);
+    }
+
+    /**
+     * Executes the task once, after the delay. Until then the task does not take any thread.
+     * Tag of a {@link Task} is registered when the delay is over.
+     *
+     * @param task  to be executed.
+     * @param delay before the execution.
+     * @param unit  of the delay.
+     * @return handle of the task.
+     */
+    public TaskHandle schedule(@NonNull Runnable task, long delay, @NonNull TimeUnit unit) {
+        return schedule(task, unit.toNanos(delay), 0);
+    }
+
+    /**
+     * Executes the task periodically, first time after the initial delay, then every
+     * <b>period</b> from the start of the first execution. If an execution takes longer than
+     * the period, the next one starts right after it, executions never overlap.
+     * <p>
+     * Executions go on until the task is cancelled or throws an exception.
+     *
+     * @param task         to be executed.
+     * @param initialDelay before the first execution.
+     * @param period       between starts of executions.
+     * @param unit         of the initial delay and the period.
+     * @return handle of the task.
+     */
+    public TaskHandle scheduleAtFixedRate(@NonNull Runnable task, long initialDelay, long period,
+                                          @NonNull TimeUnit unit) {
+        if (period <= 0) {
+            throw new IllegalArgumentException("Period must be positive.");
+        }
+        return schedule(task, unit.toNanos(initialDelay), unit.toNanos(period));
+    }
+
+    /**
+     * Executes the task periodically, first time after the initial delay, then with the
+     * <b>delay</b> between the end of an execution and the start of the next one.
+     * <p>
+     * Executions go on until the task is cancelled or throws an exception.
+     *
+     * @param task         to be executed.
+     * @param initialDelay before the first execution.
+     * @param delay        between executions.
+     * @param unit         of the initial delay and the delay.
+     * @return handle of the task.
+     */
+    public TaskHandle scheduleWithFixedDelay(@NonNull Runnable task, long initialDelay, long delay,
+                                             @NonNull TimeUnit unit) {
+        if (delay <= 0) {
+            throw new IllegalArgumentException("Delay must be positive.");
+        }
+        return schedule(task, unit.toNanos(initialDelay), -unit.toNanos(delay));
+    }
+
+    /**
+     * Cancels all waiting, running and scheduled tasks with the <b>tag</b>. Waiting tasks are
+     * removed from the queue, threads of running tasks are interrupted.
+     *
+     * @param tag that represents tasks.
+     * @return count of cancelled tasks.
+     */
+    public int cancel(@NonNull String tag) {
+        int cancelled = 0;
+        // Scheduled tasks go first, they cancel their current runs themselves.
+        for (ScheduledTask task : scheduled) {
+            if (tag.equals(task.getTag()) && task.cancel(true)) {
+                cancelled++;
+            }
+        }
+        for (TaskFuture<?> future : futures) {
+            if (tag.equals(future.getTag()) && future.cancel(true)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Cancels all waiting, running and scheduled tasks. Waiting tasks are removed from the queue,
+     * threads of running tasks are interrupted.
+     *
+     * @return count of cancelled tasks.
+     */
+    public int cancelAll() {
+        int cancelled = 0;
+        // Scheduled tasks go first, they cancel their current runs themselves.
+        for (ScheduledTask task : scheduled) {
+            if (task.cancel(true)) {
+                cancelled++;
+            }
+        }
+        for (TaskFuture<?> future : futures) {
+            if (future.cancel(true)) {
+                cancelled++;
+            }
+        }
+        return cancelled;
+    }
+
+    /**
+     * Removes all previously posted events for the passed subscriber. Pass null as a parameter to
+     * remove events added for all subscribers.
+     *
+     * @param subscriber .
+     */
+    public void invalidate(@Nullable Class<?> subscriber) {
+        eventsLock.lock();
+        try {
+            processInbox();
+            int before = events.size();
+            events.invalidate(subscriber);
+            backlog.addAndGet(events.size() - before);
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Sets the {@link Event} to be delivered. If the event has subscriber, event will
+     * be delivered to this subscriber only, if the event subscriber is null then the event will
+     * be delivered to all subscribers if any. Event will be delivered right away if
+     * the event subscriber is subscribed, or when the subscriber subscription happens.
+     * <p>
+     * This method is thread safe and does not block, unless delivery queues with
+     * {@link Config#OVERFLOW_BLOCK} strategy are full, see
+     * {@link Config.Builder#withDeliveryQueue(int, int)}. Note, that if there are undelivered
+     * events, events delivered in the source thread may be delivered in the thread of another
+     * poster. In that case the event waits behind them, room in delivery queues is checked when
+     * it is posted, and an event that would be rejected by some queue is not posted at all.
+     * Queues may still exceed the capacity slightly, if others fill them meanwhile.
+     * <p>
+     * If an {@link EventBridge} is started, the event is also forwarded to the other process.
+     *
+     * @param event to be delivered.
+     * @return false if the event was dropped for some subscriber, because its delivery queue is
+     * full and the overflow strategy is {@link Config#OVERFLOW_DROP_NEWEST}. True otherwise,
+     * including one shot events without subscribers.
+     */
+    public boolean post(@NonNull Event event) {
+        for (EventBridge bridge : bridges) {
+            bridge.forward(event);
+        }
+        return postLocally(event, -1);
+    }
+
+    /**
+     * Same as {@link #post(Event)}, but if a delivery queue of some subscriber is full, waits
+     * at most the timeout for room, regardless of the overflow strategy. Producers are never
+     * blocked in the main thread. If the event waits behind undelivered events, the room is
+     * checked when it is posted, as described in {@link #post(Event)}.
+     *
+     * @param event   to be delivered.
+     * @param timeout to wait for room in delivery queues.
+     * @param unit    of the timeout.
+     * @return false if the event was not queued for some subscriber in time.
+     */
+    public boolean tryPost(@NonNull Event event, long timeout, @NonNull TimeUnit unit) {
+        for (EventBridge bridge : bridges) {
+            bridge.forward(event);
+        }
+        return postLocally(event, Math.max(1, unit.toNanos(timeout)));
+    }
+
+    /**
+     * Subscribes the subscriber to receive worker thread execution events.
+     * The most appropriate scheme is to subscribe in onResume and unsubscribe in onPause
+     * lifecycle methods.
+     *
+     * @param subscriber .
+     */
+    public void subscribe(@NonNull EventListener subscriber) {
+        subscribe(subscriber, (Class<?>[]) null);
+    }
+
+    /**
+     * Same as {@link #subscribe(EventListener)}, but the subscriber receives only events of the
+     * passed classes and their subclasses. Other events are skipped for this subscriber without
+     * posting anything to the main thread, targeted events it is not interested in are dropped.
+     * Has no effect if the subscriber is already subscribed, unsubscribe it first to change
+     * the classes.
+     *
+     * @param subscriber .
+     * @param eventTypes classes of events to receive, subclasses of {@link Event}. Pass none to
+     *                   receive all events.
+     */
+    public void subscribe(@NonNull EventListener subscriber, Class<?>... eventTypes) {
+        subscribe(subscriber, eventTypes, null);
+    }
+
+    private void subscribe(@NonNull EventListener subscriber, @Nullable Class<?>[] eventTypes,
+            @Nullable Executor executor) {
+        if (eventTypes != null) {
+            for (Class<?> type : eventTypes) {
+                if (type == null || !Event.class.isAssignableFrom(type)) {
+                    throw new IllegalArgumentException("Not an event class: " + type);
+                }
+            }
+        }
+
+        if (clearedSubscribers.poll() != null) {
+            pruneSubscribers();
+        }
+        if (journalPending) {
+            restoreJournal();
+        }
+
+        synchronized (subscribersLock) {
+            Subscribers updated = subscribers.plus(subscriber, eventTypes, executor);
+            if (updated == subscribers) {
+                return;
+            }
+            subscribers = updated;
+        }
+
+        drainEvents();
+    }
+
+    /**
+     * Subscribes an object, that receives events with {@link Subscribe} methods. The methods are
+     * looked up in indexes passed to {@link Config.Builder#withSubscriberIndex(SubscriberIndex)},
+     * each method receives events of its parameter class and subclasses. Targeted events are
+     * addressed with the class of the object, as with {@link EventListener}.
+     *
+     * @param subscriber object of an indexed class, or {@link EventListener}.
+     * @throws IllegalArgumentException if the class of the object and its superclasses are
+     *                                  not indexed.
+     */
+    public void subscribe(@NonNull Object subscriber) {
+        if (subscriber instanceof EventListener) {
+            subscribe((EventListener) subscriber);
+            return;
+        }
+
+        SubscriberMethods methods = subscriberMethodsOf(subscriber.getClass());
+        subscribe(new IndexedListener(subscriber, methods), methods.getEventTypes());
+    }
+
+    /**
+     * Same as {@link #subscribe(Object)}, but all events are delivered to the subscriber in
+     * the executor, whether they use the main thread or the source thread, for example a single
+     * thread executor of a database writer, or a LooperDispatcher of any Looper. Events are
+     * delivered to the subscriber one by one and in order, even if the executor has several
+     * threads, while subscribers with different executors, or different subscribers sharing
+     * an executor, receive events in parallel.
+     * <p>
+     * The executor should accept deliveries while the subscriber is subscribed, events of
+     * deliveries it rejects are dropped. Has no effect if the subscriber is already subscribed,
+     * unsubscribe it first to change the executor.
+     *
+     * @param subscriber object of an indexed class, or {@link EventListener}.
+     * @param executor   that delivers events to the subscriber.
+     * @throws IllegalArgumentException if the object is not a listener and its class is not
+     *                                  indexed.
+     */
+    public void subscribe(@NonNull Object subscriber, @NonNull Executor executor) {
+        if (subscriber instanceof EventListener) {
+            subscribe((EventListener) subscriber, null, executor);
+            return;
+        }
+
+        SubscriberMethods methods = subscriberMethodsOf(subscriber.getClass());
+        subscribe(new IndexedListener(subscriber, methods), methods.getEventTypes(), executor);
+    }
+
+    /**
+     * Same as {@link #subscribe(Object)}, but the subscriber is referenced weakly: if it becomes
+     * unreachable without being unsubscribed, it is garbage collected, stops receiving events and
+     * is removed from subscribers on the next post or subscribe. Use {@link #unsubscribe(Object)}
+     * as usual to unsubscribe earlier.
+     * <p>
+     * Note that anonymous and inner class listeners keep a reference to their outer object, and
+     * are collected only if nothing else references them.
+     *
+     * @param subscriber object of an indexed class, or {@link EventListener}.
+     * @throws IllegalArgumentException if the object is not a listener and its class is not
+     *                                  indexed.
+     */
+    public void subscribeWeakly(@NonNull Object subscriber) {
+        if (subscriber instanceof EventListener) {
+            subscribe(new WeakListener(subscriber, null, clearedSubscribers));
+            return;
+        }
+
+        SubscriberMethods methods = subscriberMethodsOf(subscriber.getClass());
+        subscribe(new WeakListener(subscriber, methods, clearedSubscribers),
+                methods.getEventTypes());
+    }
+
+    /**
+     * Unsubscribes an object subscribed with {@link #subscribe(Object)} or
+     * {@link #subscribeWeakly(Object)}.
+     *
+     * @param subscriber .
+     */
+    public void unsubscribe(@NonNull Object subscriber) {
+        if (subscriber instanceof EventListener) {
+            unsubscribe((EventListener) subscriber);
+            return;
+        }
+
+        SubscriberMethods methods = subscriberMethods.get(subscriber.getClass());
+        if (methods != null) {
+            unsubscribe(new IndexedListener(subscriber, methods));
+        }
+    }
+
+    /**
+     * Unsubscribes the subscriber to receive worker thread execution events.
+     * The most appropriate scheme is to subscribe in onResume and unsubscribe in onPause
+     * lifecycle methods.
+     *
+     * @param subscriber .
+     */
+    public void unsubscribe(@NonNull EventListener subscriber) {
+        Subscription removed;
+        synchronized (subscribersLock) {
+            removed = subscribers.find(subscriber);
+            subscribers = subscribers.minus(subscriber);
+        }
+        if (removed != null && deliveryQueueCapacity > 0) {
+            removed.retireDeliveryQueue(retiredQueues);
+        }
+    }
+
+    /**
+     * Moves events journaled by the previous process to the store, they are delivered to
+     * subscribers with other stored events.
+     */
+    private void restoreJournal() {
+        eventsLock.lock();
+        try {
+            if (!journalPending) {
+                return;
+            }
+            journalPending = false;
+            backlog.addAndGet(events.restore());
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Removes subscriptions of garbage collected weak subscribers.
+     */
+    private void pruneSubscribers() {
+        while (clearedSubscribers.poll() != null) {
+            // Drained, all cleared subscriptions are removed at once.
+        }
+
+        synchronized (subscribersLock) {
+            subscribers = subscribers.withoutCleared();
+        }
+    }
+
+    /**
+     * @return dispatcher that runs main thread deliveries.
+     */
+    @NonNull
+    public MainThreadDispatcher getMainThreadDispatcher() {
+        return mainThread;
+    }
+
+    /**
+     * Checks whether task that was send to execution with <b>tag</b> is still running.
+     * Tasks submitted to WorkerThread are treated as running from the moment of submission,
+     * even if they still wait for a free thread.
+     *
+     * @param tag that represents single task.
+     * @return <b>true</b> task is running, <b>false</b> otherwise.
+     */
+    public boolean isRunning(@NonNull String tag) {
+        return tasks.isRegistered(tag);
+    }
+
+    /**
+     * Returns count of waiting and running tasks that were executed with <b>tag</b>.
+     *
+     * @param tag that represents tasks.
+     * @return count of tasks, <b>0</b> if there are none.
+     */
+    public int getRunningCount(@NonNull String tag) {
+        return tasks.count(tag);
+    }
+
+    /**
+     * Check if there is undelivered event for the <b>subscriber</b>.
+     * Note, that if there is undelivered event - it will be delivered through
+     * {@link EventListener#onEvent(Event)} method.
+     * This method should be called before {@link WorkerThread#subscribe(EventListener)}, cause
+     * any undelivered events will be delivered when the appropriate subscriber is subscribed.
+     *
+     * @param subscriber .
+     * @return <b>true</b> if there is undelivered event for this subscriber, <b>false</b> otherwise.
+     */
+    public boolean hasEvent(@NonNull EventListener subscriber) {
+        eventsLock.lock();
+        try {
+            processInbox();
+            return events.hasEvent(subscriber.getClass());
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Check if there is undelivered event for the <b>subscriber</b> and with <b>number</b>.
+     * Note, that if there is undelivered event - it will be delivered through
+     * {@link EventListener#onEvent(Event)} method.
+     * This method should be called before {@link WorkerThread#subscribe(EventListener)}, cause
+     * any undelivered events will be delivered when the appropriate subscriber is subscribed.
+     *
+     * @param subscriber .
+     * @param number     to compare with events number.
+     * @return <b>true</b> if there is undelivered event with passed number for this subscriber,
+     * <b>false</b> otherwise.
+     */
+    public boolean hasEventWithNumber(@NonNull EventListener subscriber, @NonNull Number number) {
+        eventsLock.lock();
+        try {
+            processInbox();
+            return events.hasEventWithNumber(subscriber.getClass(), number);
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Returns count of undelivered events dropped because a limit of stored events was reached,
+     * see {@link Config.Builder#withStoredEventLimits(int, int)}.
+     *
+     * @return count of events since start, <b>0</b> if there are none.
+     */
+    public long getEvictedEventCount() {
+        eventsLock.lock();
+        try {
+            processInbox();
+            return events.evictedCount();
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    /**
+     * Returns count of undelivered events dropped because their time to live has passed, see
+     * {@link Config.Builder#withStoredEventTtl(long)}.
+     *
+     * @return count of events since start, <b>0</b> if there are none.
+     */
+    public long getExpiredEventCount() {
+        eventsLock.lock();
+        try {
+            processInbox();
+            return events.expiredCount();
+        } finally {
+            eventsLock.unlock();
+        }
+    }
+
+    //endregion
+
+    //region Package private methods
+
+    void registerRunningTask(@NonNull String tag, @Nullable TaskHandle handle) {
+        tasks.register(tag, handle);
+    }
+
+    void unregisterRunningTask(@NonNull String tag) {
+        tasks.unregister(tag);
+    }
+
+    void dispatch(@NonNull TaskFuture<?> future) {
+        executor.execute(future);
+        if (metrics != null) {
+            metrics.onTaskQueued(executor.getQueue().size());
+        }
+    }
+
+    void submitInternal(@NonNull TaskFuture<?> future) {
+        submit(future);
+    }
+
+    void runOnMainThread(@NonNull Runnable runnable) {
+        mainThread.execute(runnable);
+    }
+
+    void onScheduledTaskDone(@NonNull ScheduledTask task) {
+        scheduled.remove(task);
+    }
+
+    void removeQueuedTask(@NonNull TaskFuture<?> future) {
+        executor.remove(future);
+    }
+
+    void onTaskDone(@NonNull TaskFuture<?> future) {
+        futures.remove(future);
+    }
+
+    /**
+     * Posts an event received from another process, without forwarding it back.
+     */
+    void postFromBridge(@NonNull Event event) {
+        postLocally(event, -1);
+    }
+
+    void addBridge(@NonNull EventBridge bridge) {
+        synchronized (bridgesLock) {
+            EventBridge[] updated = Arrays.copyOf(bridges, bridges.length + 1);
+            updated[bridges.length] = bridge;
+            bridges = updated;
+        }
+    }
+
+    void removeBridge(@NonNull EventBridge bridge) {
+        synchronized (bridgesLock) {
+            List<EventBridge> updated = new ArrayList<>(Arrays.asList(bridges));
+            updated.remove(bridge);
+            bridges = updated.isEmpty()
+                    ? NO_BRIDGES : updated.toArray(new EventBridge[updated.size()]);
+        }
+    }
+
+    /**
+     * Passes the event to the subscriber, called by deliveries that were handed
+     * to the main thread or to the executor of the subscription.
+     */
+    void runDelivery(@NonNull Subscription subscription, @NonNull Event event) {
+        if (event.postedNanos != 0) {
+            onDelivering(subscription.listener, event);
+        }
+        // The watchdog guards the main thread, other executors are the subscriber's own choice.
+        if (watchdog != null && subscription.executor == null) {
+            watchdog.deliver(subscription, event);
+        } else {
+            subscription.listener.onEvent(event);
+        }
+    }
+
+    /**
+     * Moves main thread deliveries of the subscription to a background lane. Deliveries already
+     * handed to the main thread are completed first, so the subscriber still receives events one
+     * by one and in order. No thread waits for them: the lane holds new deliveries until a
+     * marker handed to the main thread after them runs.
+     */
+    void demote(@NonNull Subscription subscription) {
+        final DemotedLane lane = new DemotedLane(subscription);
+        subscription.demote(lane, new Runnable() {
+            @Override
+            public void run() {
+                mainThread.execute(lane);
+            }
+        });
+    }
+
+    //endregion
+
+    //region Private methods
+
+    private <T> TaskFuture<T> submit(TaskFuture<T> future) {
+        track(future);
+        dispatch(future);
+        return future;
+    }
+
+    private TaskHandle schedule(Runnable task, long delayNanos, long periodNanos) {
+        ScheduledTask scheduledTask =
+                new ScheduledTask(this, timer, task, PRIORITY_NORMAL, delayNanos, periodNanos);
+        scheduled.add(scheduledTask);
+        scheduledTask.start();
+        return scheduledTask;
+    }
+
+    private void track(TaskFuture<?> future) {
+        Runnable task = future.getTask();
+        if (task instanceof Task && !((Task) task).registered) {
+            ((Task) task).onSubmitted(future);
+        }
+        futures.add(future);
+    }
+
+    /**
+     * Subscribers that receive the event, without weak subscriptions whose subscribers are
+     * garbage collected, so the event is stored instead of being dropped by them.
+     */
+    @Nullable
+    private Subscription[] targetsOf(Event event) {
+        Subscription[] targets = subscribers.targetsOf(event);
+        if (Subscribers.containsCleared(targets)) {
+            pruneSubscribers();
+            targets = subscribers.targetsOf(event);
+        }
+        return targets;
+    }
+
+    /**
+     * Deliveries are not tracked, so cancelling tasks does not drop events.
+     */
+    private void enqueueDelivery(Subscription subscription, Runnable delivery) {
+        lanes.enqueue(subscription, new TaskFuture<Void>(this, delivery, PRIORITY_NORMAL));
+    }
+
+    private SubscriberMethods subscriberMethodsOf(Class<?> subscriberClass) {
+        SubscriberMethods methods = subscriberMethods.get(subscriberClass);
+        if (methods != null) {
+            return methods;
+        }
+
+        // Subclasses without own methods use the methods of the closest indexed superclass.
+        for (Class<?> type = subscriberClass; type != null; type = type.getSuperclass()) {
+            for (SubscriberIndex index : subscriberIndexes) {
+                methods = index.getSubscriberMethods(type);
+                if (methods != null) {
+                    subscriberMethods.putIfAbsent(subscriberClass, methods);
+                    return methods;
+                }
+            }
+        }
+        throw new IllegalArgumentException(subscriberClass + " has no indexed @Subscribe "
+                + "methods, check that the annotation processor is applied and its index is "
+                + "passed to Config.");
+    }
+
+    private static Task wrap(@NonNull final Runnable task, @NonNull String tag) {
+        return new Task(tag) {
+            @Override
+            public void execute() {
+                task.run();
+            }
+        };
+    }
+
+    /**
+     * @param waitNanos time to wait for room in full delivery queues, see
+     *                  {@link DeliveryQueue#offer(Event, long, boolean)}.
+     * @return whether all subscribers accepted the event.
+     */
+    private boolean postLocally(Event event, long waitNanos) {
+        MetricsSink metrics = this.metrics;
+        if (metrics != null) {
+            event.postedNanos = System.nanoTime();
+        }
+
+        if (clearedSubscribers.poll() != null) {
+            pruneSubscribers();
+        }
+
+        event.acquire();
+        if (backlog.get() == 0) {
+            Subscription[] targets = targetsOf(event);
+            if (targets != null) {
+                if (metrics != null) {
+                    metrics.onEventPosted(0);
+                }
+                try {
+                    return deliverEvent(targets, event, waitNanos);
+                } finally {
+                    event.release();
+                }
+            } else if (Event.TYPE_ONE_SHOT == event.getType()) {
+                event.release();
+                return true;
+            }
+        }
+
+        if (deliveryQueueCapacity > 0 && !awaitQueueRoom(event, waitNanos)) {
+            event.release();
+            return false;
+        }
+
+        int pending = backlog.incrementAndGet();
+        if (metrics != null) {
+            metrics.onEventPosted(pending);
+        }
+        inbox.offer(event);
+        drainEvents();
+        return true;
+    }
+
+    /**
+     * Applies backpressure of delivery queues to an event that waits behind stored events: it is
+     * delivered later without waiting, so the poster waits for room now.
+     *
+     * @return false if some delivery queue would reject the event.
+     */
+    private boolean awaitQueueRoom(Event event, long waitNanos) {
+        Subscription[] targets = targetsOf(event);
+        if (targets == null) {
+            return true;
+        }
+
+        long deadline = waitNanos > 0 ? System.nanoTime() + waitNanos : 0;
+        for (Subscription subscription : targets) {
+            if (!event.useMainThread() && subscription.executor == null) {
+                continue;
+            }
+            long remaining = waitNanos > 0
+                    ? Math.max(1, deadline - System.nanoTime()) : waitNanos;
+            DeliveryQueue queue = subscription.deliveryQueue(deliveryQueueCapacity,
+                    overflowStrategy, retiredQueues);
+            if (!queue.awaitRoom(event, remaining, mayWait(subscription, remaining))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Moves posted events into the store and delivers everything that has subscribers. Only one
+     * thread drains at a time, requests made meanwhile are picked up by the draining thread.
+     */
+    private void drainEvents() {
+        if (drainRequests.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        Throwable failure = null;
+        do {
+            eventsLock.lock();
+            try {
+                processInbox();
+            } catch (RuntimeException | Error e) {
+                // Requests made meanwhile are still served, the failure reaches the poster after.
+                failure = failure != null ? failure : e;
+            } finally {
+                eventsLock.unlock();
+            }
+            missed = drainRequests.addAndGet(-missed);
+        } while (missed != 0);
+
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw (RuntimeException) failure;
+        }
+    }
+
+    /**
+     * Moves posted events from the inbox into the store keeping their order, and delivers stored
+     * events to current subscribers. Must be called with {@link #eventsLock} held.
+     * <p>
+     * If a subscriber throws, the rest of the events is still processed, and the first failure
+     * is thrown after that.
+     */
+    private void processInbox() {
+        RuntimeException failure = null;
+        int released = events.expire();
+        try {
+            Event event;
+            while ((event = inbox.poll()) != null) {
+                if (Event.TYPE_ONE_SHOT == event.getType()) {
+                    try {
+                        deliverStoredEvents();
+                    } catch (RuntimeException e) {
+                        failure = failure != null ? failure : e;
+                    }
+                    try {
+                        Subscription[] targets = targetsOf(event);
+                        if (targets != null) {
+                            deliverEvent(targets, event, 0);
+                        }
+                    } catch (RuntimeException e) {
+                        failure = failure != null ? failure : e;
+                    } finally {
+                        event.release();
+                        released++;
+                    }
+                } else {
+                    int before = events.size();
+                    events.add(event);
+                    released += before + 1 - events.size();
+                }
+            }
+            deliverStoredEvents();
+        } catch (RuntimeException e) {
+            failure = failure != null ? failure : e;
+        } finally {
+            if (released > 0) {
+                backlog.addAndGet(-released);
+            }
+            reportStore();
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Reports events evicted and expired since the previous report and the size of the store to
+     * the metrics sink.
+     */
+    private void reportStore() {
+        if (metrics == null) {
+            return;
+        }
+        long evicted = events.evictedCount();
+        long expired = events.expiredCount();
+        if (evicted != reportedEvicted || expired != reportedExpired) {
+            metrics.onEventsEvicted((int) (evicted - reportedEvicted),
+                    (int) (expired - reportedExpired));
+            reportedEvicted = evicted;
+            reportedExpired = expired;
+        }
+        metrics.onEventsStored(events.size());
+    }
+
+    /**
+     * Delivers stored events that have subscribers now, and removes them from the backlog. If
+     * a subscriber throws, the rest of the events is still delivered, and the first failure is
+     * thrown after that.
+     */
+    private void deliverStoredEvents() {
+        if (events.isEmpty()) {
+            return;
+        }
+        Subscribers snapshot = subscribers;
+        if (snapshot.hasCleared()) {
+            // Events of collected subscribers stay in the store.
+            pruneSubscribers();
+            snapshot = subscribers;
+        }
+        if (snapshot.isEmpty()) {
+            return;
+        }
+
+        List<Event> drained = events.drain(snapshot.classes());
+        RuntimeException failure = null;
+        try {
+            for (Event event : drained) {
+                try {
+                    Subscription[] targets = snapshot.targetsOf(event);
+                    if (targets != null) {
+                        deliverEvent(targets, event, 0);
+                    }
+                } catch (RuntimeException e) {
+                    failure = failure != null ? failure : e;
+                } finally {
+                    event.release();
+                }
+            }
+        } finally {
+            backlog.addAndGet(-drained.size());
+        }
+
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * @param waitNanos time to wait for room in full delivery queues, shared by all targets.
+     * @return whether all targets accepted the event.
+     */
+    private boolean deliverEvent(Subscription[] targets, Event event, long waitNanos) {
+        long deadline = waitNanos > 0 ? System.nanoTime() + waitNanos : 0;
+        boolean accepted = true;
+        for (Subscription subscription : targets) {
+            long remaining = waitNanos > 0
+                    ? Math.max(1, deadline - System.nanoTime()) : waitNanos;
+            accepted &= deliverEvent(subscription, event, remaining);
+        }
+        return accepted;
+    }
+
+    private boolean deliverEvent(Subscription subscription, Event event, long waitNanos) {
+        if (!event.useMainThread() && subscription.executor == null) {
+            if (metrics != null) {
+                onDelivering(subscription.listener, event);
+            }
+            subscription.listener.onEvent(event);
+        } else if (deliveryQueueCapacity > 0) {
+            return queueDelivery(subscription, event, waitNanos);
+        } else if (Event.TYPE_LATEST_ONLY == event.getType()) {
+            deliverLatestEvent(subscription, event);
+        } else {
+            subscription.raiseBarrier();
+            executeDelivery(subscription, Delivery.obtain(subscription, event));
+        }
+        return true;
+    }
+
+    /**
+     * Adds main thread delivery of the event to the bounded queue of the subscriber.
+     *
+     * @return false if the queue rejected the event.
+     */
+    private boolean queueDelivery(Subscription subscription, Event event, long waitNanos) {
+        DeliveryQueue queue = subscription.deliveryQueue(deliveryQueueCapacity, overflowStrategy,
+                retiredQueues);
+        switch (queue.offer(event, waitNanos, mayWait(subscription, waitNanos))) {
+            case DeliveryQueue.OFFER_SCHEDULE:
+                executeDelivery(subscription, queue);
+                return true;
+            case DeliveryQueue.OFFER_REJECTED:
+                return false;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * @return whether the posting thread may wait for room in the delivery queue, it never waits
+     * for deliveries that run in the same thread.
+     */
+    private boolean mayWait(Subscription subscription, long waitNanos) {
+        return waitNanos != 0 && !(subscription.executor != null
+                ? subscription.executor.isDispatchThread() : mainThread.isDispatchThread());
+    }
+
+    /**
+     * Hands the rest of a delivery queue to the executor of the subscription, or to the main
+     * thread again.
+     */
+    void scheduleDeliveries(@NonNull Subscription subscription, @NonNull Runnable deliveries) {
+        executeDelivery(subscription, deliveries);
+    }
+
+    /**
+     * Conflates main thread delivery of latest only events: while delivery of previous event of
+     * the same class is still queued, the event just replaces it.
+     */
+    private void deliverLatestEvent(Subscription subscription, Event event) {
+        ConflationSlot slot = subscription.latestSlot(event.getClass());
+        switch (slot.offer(event, subscription.barrier())) {
+            case ConflationSlot.OFFER_SCHEDULE:
+                executeDelivery(subscription, slot);
+                break;
+            case ConflationSlot.OFFER_REJECTED:
+                subscription.raiseBarrier();
+                executeDelivery(subscription, Delivery.obtain(subscription, event));
+                break;
+        }
+    }
+
+    /**
+     * Hands the delivery to the executor of the subscription, or to the main thread.
+     */
+    private void executeDelivery(Subscription subscription, Runnable delivery) {
+        SerialExecutor executor = subscription.executor;
+        if (executor != null) {
+            executor.execute(delivery);
+        } else if (watchdog != null && watchdog.isDemotionEnabled()) {
+            subscription.execute(mainThread, delivery);
+        } else {
+            mainThread.execute(delivery);
+        }
+    }
+
+    /**
+     * Reports delivery latency of the event, that is about to be passed to the subscriber.
+     */
+    private void onDelivering(EventListener subscriber, Event event) {
+        MetricsSink metrics = this.metrics;
+        if (metrics != null && event.postedNanos != 0) {
+            metrics.onEventDelivered(subscriber, System.nanoTime() - event.postedNanos);
+        }
+    }
+
+    //endregion
+
+    /**
+     * Applies the configured rejection policy. Discarded tasks are cancelled, so their handles
+     * are completed and their tags do not stay registered.
+     */
+    private static final class RejectionHandler implements RejectedExecutionHandler {
+
+        @Config.RejectionPolicy
+        private final int policy;
+
+        RejectionHandler(@Config.RejectionPolicy int policy) {
+            this.policy = policy;
+        }
+
+        @Override
+        public void rejectedExecution(Runnable runnable, ThreadPoolExecutor executor) {
+            if (policy == Config.REJECT_CALLER_RUNS && !executor.isShutdown()) {
+                runnable.run();
+                return;
+            }
+
+            ((TaskFuture<?>) runnable).cancel(false);
+            if (policy != Config.REJECT_DISCARD) {
+                throw new RejectedExecutionException("Task " + runnable + " rejected from " + executor);
+            }
+        }
+    }
+
+    /**
+     * Background lane of a demoted subscriber. Deliveries are held until the lane is run on the
+     * main thread, after the deliveries handed there before the demotion, then they are enqueued
+     * to the lane of the subscription.
+     */
+    private final class DemotedLane implements Executor, Runnable {
+
+        private final Subscription subscription;
+        private final ArrayDeque<Runnable> held = new ArrayDeque<>();
+        private boolean open;
+
+        DemotedLane(Subscription subscription) {
+            this.subscription = subscription;
+        }
+
+        @Override
+        public synchronized void execute(@NonNull Runnable delivery) {
+            if (open) {
+                enqueueDelivery(subscription, delivery);
+            } else {
+                held.add(delivery);
+            }
+        }
+
+        @Override
+        public synchronized void run() {
+            Runnable delivery;
+            while ((delivery = held.poll()) != null) {
+                enqueueDelivery(subscription, delivery);
+            }
+            open = true;
+        }
+    }
+
+    /**
+     * Handle of the tagged task that was not submitted to WorkerThread, it only tracks
+     * the registration of the tag.
+     */
+    private final class TagHandle implements TaskHandle {
+
+        private final String tag;
+
+        TagHandle(String tag) {
+            this.tag = tag;
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            return false;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            return !tasks.isRegistered(tag);
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.ivanvasheka.workerthread;
+
+import android.support.annotation.NonNull;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Creates named worker threads that run with the configured linux priority, applied by the
+ * {@link Platform}.
+ */
+final class WorkerThreadFactory implements ThreadFactory {
+
+    private final AtomicInteger count = new AtomicInteger();
+    private final String name;
+    private final int priority;
+
+    WorkerThreadFactory(@NonNull String name, int priority) {
+        this.name = name;
+        this.priority = priority;
+    }
+
+    @Override
+    public Thread newThread(@NonNull final Runnable runnable) {
+        return new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Platform.get().setThreadPriority(priority);
+                runnable.run();
+            }
+        }, name + " #" + count.incrementAndGet());
+    }
+}
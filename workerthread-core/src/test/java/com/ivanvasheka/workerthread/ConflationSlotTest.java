@@ -0,0 +1,139 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ConflationSlotTest {
+
+    @Test
+    public void newerEventReplacesThePendingOne() {
+        MessageListener listener = new MessageListener();
+        Subscription subscription = new Subscription(listener);
+        ConflationSlot slot = subscription.latestSlot(Event.class);
+        int barrier = subscription.barrier();
+
+        assertEquals(ConflationSlot.OFFER_SCHEDULE, slot.offer(latest("first"), barrier));
+        assertEquals(ConflationSlot.OFFER_MERGED, slot.offer(latest("second"), barrier));
+        slot.run();
+        assertEquals(Collections.singletonList("second"), listener.messages);
+
+        // Delivered, so the next event schedules the slot again.
+        assertEquals(ConflationSlot.OFFER_SCHEDULE, slot.offer(latest("third"), barrier));
+    }
+
+    @Test
+    public void eventAfterTheBarrierIsNotMerged() {
+        MessageListener listener = new MessageListener();
+        Subscription subscription = new Subscription(listener);
+        ConflationSlot slot = subscription.latestSlot(Event.class);
+
+        slot.offer(latest("first"), subscription.barrier());
+        // Another delivery to the subscriber went in between.
+        subscription.raiseBarrier();
+        assertEquals(ConflationSlot.OFFER_REJECTED,
+                slot.offer(latest("second"), subscription.barrier()));
+        slot.run();
+        assertEquals(Collections.singletonList("first"), listener.messages);
+    }
+
+    @Test
+    public void slotIsKeptPerEventClass() {
+        Subscription subscription = new Subscription(new MessageListener());
+        int barrier = subscription.barrier();
+
+        assertSame(subscription.latestSlot(Event.class), subscription.latestSlot(Event.class));
+        assertEquals(ConflationSlot.OFFER_SCHEDULE,
+                subscription.latestSlot(Event.class).offer(latest("first"), barrier));
+        assertEquals(ConflationSlot.OFFER_SCHEDULE,
+                subscription.latestSlot(ProgressEvent.class).offer(new ProgressEvent(), barrier));
+    }
+
+    @Test
+    public void latestOnlyEventsAreConflatedUntilDelivered() throws Exception {
+        MessageListener listener = new MessageListener();
+        List<String> received = deliverWhileMainThreadIsBusy(listener,
+                latest("first"), latest("second"), latest("third"));
+
+        assertEquals(Collections.singletonList("third"), received);
+    }
+
+    @Test
+    public void otherEventsInBetweenKeepTheDeliveryOrder() throws Exception {
+        MessageListener listener = new MessageListener();
+        Event regular = new Event(MessageListener.class);
+        regular.setMessage("regular");
+        List<String> received = deliverWhileMainThreadIsBusy(listener,
+                latest("first"), regular, latest("second"), latest("third"));
+
+        // The regular event raised the barrier, later events can not replace the pending one.
+        assertEquals(Arrays.asList("first", "regular", "second", "third"), received);
+    }
+
+    /**
+     * Posts the events while the main thread is blocked, so they wait for delivery together.
+     */
+    private static List<String> deliverWhileMainThreadIsBusy(MessageListener listener,
+            Event... events) throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch delivered = new CountDownLatch(1);
+        MainThreadDispatcher mainThread = WorkerThread.get().getMainThreadDispatcher();
+        WorkerThread.get().subscribe(listener);
+        try {
+            mainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        release.await(5, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            });
+            for (Event event : events) {
+                WorkerThread.get().post(event);
+            }
+            release.countDown();
+            mainThread.execute(new Runnable() {
+                @Override
+                public void run() {
+                    delivered.countDown();
+                }
+            });
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            return listener.messages;
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    private static Event latest(String message) {
+        Event event = new Event(MessageListener.class);
+        event.setType(Event.TYPE_LATEST_ONLY);
+        event.setMessage(message);
+        return event;
+    }
+
+    private static final class ProgressEvent extends Event {
+    }
+
+    private static final class MessageListener implements EventListener {
+
+        private final List<String> messages = Collections.synchronizedList(new ArrayList<String>());
+
+        @Override
+        public void onEvent(Event event) {
+            messages.add(event.getMessage());
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class DeliveryQueueTest {
+
+    private static final EventListener LISTENER = new EventListener() {
+        @Override
+        public void onEvent(Event event) {
+        }
+    };
+
+    @Test
+    public void newestEventIsRejectedWhenFull() {
+        DeliveryQueue queue = queue(2, Config.OVERFLOW_DROP_NEWEST);
+        Event first = new Event();
+        Event second = new Event();
+
+        assertEquals(DeliveryQueue.OFFER_SCHEDULE, queue.offer(first, -1, true));
+        assertEquals(DeliveryQueue.OFFER_QUEUED, queue.offer(second, -1, true));
+        assertEquals(DeliveryQueue.OFFER_REJECTED, queue.offer(new Event(), -1, true));
+        assertEquals(Arrays.asList(first, second), queue.queued());
+    }
+
+    @Test
+    public void oldestEventIsDroppedWhenFull() {
+        DeliveryQueue queue = queue(2, Config.OVERFLOW_DROP_OLDEST);
+        Event second = new Event();
+        Event third = new Event();
+        queue.offer(new Event(), -1, true);
+        queue.offer(second, -1, true);
+
+        // The queue is handed to the main thread once, dropped events leave nothing behind.
+        assertEquals(DeliveryQueue.OFFER_QUEUED, queue.offer(third, -1, true));
+        assertEquals(Arrays.asList(second, third), queue.queued());
+    }
+
+    @Test
+    public void oldestEventOfTheSameClassIsConflated() {
+        DeliveryQueue queue = queue(2, Config.OVERFLOW_CONFLATE);
+        Event plain = new Event();
+        Event progress = new ProgressEvent();
+        Event newerProgress = new ProgressEvent();
+        queue.offer(plain, -1, true);
+        queue.offer(progress, -1, true);
+
+        assertEquals(DeliveryQueue.OFFER_QUEUED, queue.offer(newerProgress, -1, true));
+        assertEquals(Arrays.asList(plain, newerProgress), queue.queued());
+    }
+
+    @Test
+    public void blockingQueueIsExceededWhenProducerCanNotWait() {
+        DeliveryQueue queue = queue(1, Config.OVERFLOW_BLOCK);
+        queue.offer(new Event(), -1, true);
+
+        assertEquals(DeliveryQueue.OFFER_QUEUED, queue.offer(new Event(), -1, false));
+        assertEquals(2, queue.queued().size());
+    }
+
+    @Test
+    public void timedOfferIsRejectedAfterTimeout() {
+        DeliveryQueue queue = queue(1, Config.OVERFLOW_BLOCK);
+        queue.offer(new Event(), -1, true);
+
+        long start = System.nanoTime();
+        assertEquals(DeliveryQueue.OFFER_REJECTED, queue.offer(new Event(), 20_000_000L, true));
+        assertTrue(System.nanoTime() - start >= 20_000_000L);
+        assertEquals(1, queue.queued().size());
+    }
+
+    @Test
+    public void queueOfNextSubscriptionWaitsForRetiredQueue() {
+        ConcurrentHashMap<Object, DeliveryQueue> retired = new ConcurrentHashMap<>();
+        Subscription previous = new Subscription(LISTENER);
+        DeliveryQueue old = previous.deliveryQueue(2, Config.OVERFLOW_DROP_NEWEST, retired);
+        old.offer(new Event(), -1, true);
+        previous.retireDeliveryQueue(retired);
+
+        DeliveryQueue next = new Subscription(LISTENER)
+                .deliveryQueue(2, Config.OVERFLOW_DROP_NEWEST, retired);
+        next.offer(new Event(), -1, true);
+        next.run();
+        assertEquals(1, next.queued().size());
+
+        old.run();
+        assertTrue(old.queued().isEmpty());
+        assertTrue(retired.isEmpty());
+    }
+
+    private static DeliveryQueue queue(int capacity, @Config.OverflowStrategy int strategy) {
+        return new Subscription(LISTENER).deliveryQueue(capacity, strategy);
+    }
+
+    private static final class ProgressEvent extends Event {
+    }
+}
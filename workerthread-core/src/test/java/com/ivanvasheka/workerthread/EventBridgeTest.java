@@ -0,0 +1,129 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs the bridge against a stand-in peer, that reads and writes frames over a loopback socket
+ * the way the bridge in the other process would.
+ */
+public class EventBridgeTest {
+
+    private Socket peer;
+    private EventBridge bridge;
+
+    @Before
+    public void setUp() throws Exception {
+        ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress());
+        try {
+            peer = new Socket(server.getInetAddress(), server.getLocalPort());
+            final Socket socket = server.accept();
+            bridge = EventBridge.builder(new EventBridge.Connection() {
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    return socket.getInputStream();
+                }
+
+                @Override
+                public OutputStream getOutputStream() throws IOException {
+                    return socket.getOutputStream();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    socket.close();
+                }
+            }).withFilter(new EventBridge.Filter() {
+                @Override
+                public boolean shouldForward(Event event) {
+                    return event.getSubscriber() == RemoteScreen.class;
+                }
+            }).withFlushDelay(50).build();
+        } finally {
+            server.close();
+        }
+        bridge.start();
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        bridge.close();
+        peer.close();
+    }
+
+    @Test
+    public void selectedEventsAreForwardedInOneBatch() throws Exception {
+        Event.to(RemoteScreen.class).oneShot().withMessage("first").post();
+        Event.to(LocalScreen.class).oneShot().withMessage("local").post();
+        Event.to(RemoteScreen.class).oneShot().withMessage("second").withNumber(2).post();
+
+        List<Event> frame = EventBridge.readFrame(new DataInputStream(peer.getInputStream()));
+        assertEquals(2, frame.size());
+        assertEquals("first", frame.get(0).getMessage());
+        assertEquals("second", frame.get(1).getMessage());
+        assertEquals(2, frame.get(1).getInt());
+        assertEquals(Event.TYPE_ONE_SHOT, frame.get(1).getType());
+    }
+
+    @Test
+    public void remoteEventsArePostedLocallyAndNotForwardedBack() throws Exception {
+        RemoteScreen listener = new RemoteScreen();
+        WorkerThread.get().subscribe(listener);
+        try {
+            ByteArrayOutputStream entries = new ByteArrayOutputStream();
+            entries.write(EventBridge.encode(
+                    Event.to(RemoteScreen.class).withMessage("from peer").build()));
+            EventBridge.writeFrame(peer.getOutputStream(), entries.toByteArray(), 1);
+
+            assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("from peer", listener.message);
+
+            Event.to(RemoteScreen.class).oneShot().withMessage("sentinel").post();
+            List<Event> frame = EventBridge.readFrame(new DataInputStream(peer.getInputStream()));
+            assertEquals(1, frame.size());
+            assertEquals("sentinel", frame.get(0).getMessage());
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void bridgeClosesWhenPeerDisconnects() throws Exception {
+        peer.close();
+        for (int i = 0; i < 100 && !bridge.isClosed(); i++) {
+            Thread.sleep(10);
+        }
+        assertTrue(bridge.isClosed());
+    }
+
+    private static final class RemoteScreen implements EventListener {
+
+        final CountDownLatch delivered = new CountDownLatch(1);
+        volatile String message;
+
+        @Override
+        public void onEvent(Event event) {
+            message = event.getMessage();
+            delivered.countDown();
+        }
+    }
+
+    private static final class LocalScreen {
+    }
+}
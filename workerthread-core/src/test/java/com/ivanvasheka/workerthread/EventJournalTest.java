@@ -0,0 +1,79 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class EventJournalTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void liveEventsAreReplayedByNextJournal() throws Exception {
+        File file = new File(folder.getRoot(), "events.journal");
+        EventJournal journal = new EventJournal(file);
+        Event result = Event.to(Screen.class).latestOnly().withMessage("done").withNumber(42L)
+                .useSourceThread().build();
+        result.putExtra("progress", 0.5f);
+        result.putExtra("name", "report");
+        long resultId = journal.append(result);
+        long removedId = journal.append(Event.toEveryone().withNumber(1).build());
+        journal.remove(removedId);
+
+        Event data = Event.toEveryone().withData(new Object()).build();
+        assertEquals(0, journal.append(data));
+        assertTrue(resultId != 0);
+
+        Map<Long, Event> replayed = new EventJournal(file).replay();
+        assertEquals(1, replayed.size());
+        Event restored = replayed.get(resultId);
+        assertEquals(Screen.class, restored.getSubscriber());
+        assertEquals(Event.TYPE_LATEST_ONLY, restored.getType());
+        assertFalse(restored.useMainThread());
+        assertEquals("done", restored.getMessage());
+        assertEquals(42L, restored.getNumber());
+        assertEquals(0.5f, restored.getFloatExtra("progress", 0), 0);
+        assertEquals("report", restored.getStringExtra("name"));
+    }
+
+    @Test
+    public void removedEventsAreCompacted() throws Exception {
+        File file = new File(folder.getRoot(), "events.journal");
+        EventJournal journal = new EventJournal(file);
+        StringBuilder message = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            message.append('x');
+        }
+
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            ids.add(journal.append(Event.to(Screen.class).withMessage(message.toString())
+                    .withNumber(i).build()));
+        }
+        long grown = file.length();
+        for (int i = 0; i < 190; i++) {
+            journal.remove(ids.get(i));
+        }
+
+        assertTrue(file.length() < grown);
+        Map<Long, Event> replayed = new EventJournal(file).replay();
+        assertEquals(10, replayed.size());
+        int expected = 190;
+        for (Event event : replayed.values()) {
+            assertEquals(expected++, event.getInt());
+        }
+    }
+
+    private static final class Screen {
+    }
+}
@@ -0,0 +1,56 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+public class EventPoolTest {
+
+    @Test
+    public void onlyObtainedEventsAreReturnedToThePool() {
+        Event obtained = Event.obtain();
+        obtained.recycle();
+        assertSame(obtained, Event.obtain());
+
+        Event created = new Event();
+        created.setMessage("created");
+        created.recycle();
+
+        assertNull(created.getMessage());
+        assertNotSame(created, Event.obtain());
+    }
+
+    @Test
+    public void droppedTwiceDeliveryReleasesTheEventOnce() {
+        Subscription subscription = new Subscription(new EventListener() {
+            @Override
+            public void onEvent(Event event) {
+            }
+        });
+        Event event = Event.obtain();
+        event.setMessage("pending");
+        Delivery dropped = Delivery.obtain(subscription, event);
+        Delivery pending = Delivery.obtain(subscription, event);
+
+        dropped.drop();
+        dropped.drop();
+
+        // Still referenced by the pending delivery.
+        assertEquals("pending", event.getMessage());
+        try {
+            event.recycle();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        // The delivery is pooled once, so two deliveries obtained next are different.
+        assertNotSame(Delivery.obtain(subscription, Event.obtain()),
+                Delivery.obtain(subscription, Event.obtain()));
+
+        pending.drop();
+        assertNull(event.getMessage());
+    }
+}
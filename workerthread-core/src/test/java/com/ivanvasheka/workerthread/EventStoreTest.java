@@ -0,0 +1,153 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EventStoreTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void oldestEventIsEvictedWhenSubscriberLimitIsReached() {
+        EventStore store = new EventStore(2, 0, 0, Config.EVICT_OLDEST, null);
+        Event first = new Event(Screen.class);
+        Event second = new Event(Screen.class);
+        Event third = new Event(Screen.class);
+        store.add(first);
+        store.add(second);
+        store.add(third);
+        store.add(new Event(OtherScreen.class));
+
+        assertEquals(3, store.size());
+        assertEquals(1, store.evictedCount());
+        List<Event> drained = store.drain(Collections.<Class<?>>singleton(Screen.class));
+        assertEquals(2, drained.size());
+        assertSame(second, drained.get(0));
+        assertSame(third, drained.get(1));
+    }
+
+    @Test
+    public void newestEventIsDroppedWhenTotalLimitIsReached() {
+        EventStore store = new EventStore(0, 2, 0, Config.EVICT_NEWEST, null);
+        Event first = new Event(Screen.class);
+        store.add(first);
+        store.add(new Event(OtherScreen.class));
+        store.add(new Event(Screen.class));
+
+        assertEquals(2, store.size());
+        assertEquals(1, store.evictedCount());
+        List<Event> drained = store.drain(Collections.<Class<?>>singleton(Screen.class));
+        assertEquals(1, drained.size());
+        assertSame(first, drained.get(0));
+    }
+
+    @Test
+    public void latestEventOfEachTypeIsKept() {
+        EventStore store = new EventStore(2, 0, 0, Config.EVICT_LATEST_PER_TYPE, null);
+        Event progress = new ProgressEvent();
+        Event other = new Event(Screen.class);
+        Event newerProgress = new ProgressEvent();
+        store.add(progress);
+        store.add(other);
+        store.add(newerProgress);
+
+        assertEquals(1, store.evictedCount());
+        List<Event> drained = store.drain(Collections.<Class<?>>singleton(Screen.class));
+        assertEquals(2, drained.size());
+        assertSame(other, drained.get(0));
+        assertSame(newerProgress, drained.get(1));
+    }
+
+    @Test
+    public void expiredEventsAreRemovedInStoringOrder() throws Exception {
+        EventStore store = new EventStore(0, 0, 50_000_000L, Config.EVICT_OLDEST, null);
+        store.add(new Event(Screen.class));
+        store.add(new Event());
+        Thread.sleep(60);
+        Event fresh = new Event(OtherScreen.class);
+        store.add(fresh);
+
+        assertEquals(2, store.expire());
+        assertEquals(2, store.expiredCount());
+        assertFalse(store.hasEvent(Screen.class));
+        assertTrue(store.hasEvent(OtherScreen.class));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void queuesOfSubscribedClassesAreMergedInPostingOrder() {
+        EventStore store = new EventStore();
+        Event first = new Event(Screen.class);
+        Event second = new Event();
+        Event third = new Event(OtherScreen.class);
+        Event notSubscribed = new Event(ThirdScreen.class);
+        Event fourth = new Event(Screen.class);
+        store.add(first);
+        store.add(second);
+        store.add(third);
+        store.add(notSubscribed);
+        store.add(fourth);
+
+        Set<Class<?>> subscribers = new HashSet<>();
+        subscribers.add(Screen.class);
+        subscribers.add(OtherScreen.class);
+        // More subscribed classes than stored ones, only the stored ones are looked at.
+        subscribers.add(Object.class);
+        subscribers.add(String.class);
+        List<Event> drained = store.drain(subscribers);
+
+        assertEquals(Arrays.asList(first, second, third, fourth), drained);
+        assertEquals(1, store.size());
+        assertTrue(store.hasEvent(ThirdScreen.class));
+        assertTrue(store.drain(Collections.<Class<?>>singleton(Screen.class)).isEmpty());
+    }
+
+    @Test
+    public void restoredEventsAreDrainedBeforeEventsOfThisProcess() throws Exception {
+        File file = new File(folder.getRoot(), "events.journal");
+        EventStore previous = new EventStore(0, 0, 0, Config.EVICT_OLDEST, new EventJournal(file));
+        previous.add(Event.to(Screen.class).withMessage("first").build());
+        previous.add(Event.toEveryone().withMessage("second").build());
+
+        EventStore store = new EventStore(0, 0, 0, Config.EVICT_OLDEST, new EventJournal(file));
+        Event current = new Event(Screen.class);
+        store.add(current);
+        assertEquals(2, store.restore());
+
+        List<Event> drained = store.drain(Collections.<Class<?>>singleton(Screen.class));
+        assertEquals(3, drained.size());
+        assertEquals("first", drained.get(0).getMessage());
+        assertEquals("second", drained.get(1).getMessage());
+        assertSame(current, drained.get(2));
+    }
+
+    private static final class Screen {
+    }
+
+    private static final class OtherScreen {
+    }
+
+    private static final class ThirdScreen {
+    }
+
+    private static final class ProgressEvent extends Event {
+
+        ProgressEvent() {
+            super(Screen.class);
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ExtrasTest {
+
+    @Test
+    public void collidingKeysAreFoundAfterTheFirstIsRemoved() {
+        // Strings with the same hash code, they share one probe chain.
+        Extras extras = new Extras();
+        extras.putPrimitive("AaAa", Extras.KIND_INT, 1);
+        extras.putPrimitive("AaBB", Extras.KIND_INT, 2);
+        extras.putPrimitive("BBAa", Extras.KIND_INT, 3);
+
+        extras.remove("AaAa");
+
+        assertFalse(extras.containsKey("AaAa"));
+        assertEquals(2, extras.getPrimitive("AaBB", Extras.KIND_INT, 0));
+        assertEquals(3, extras.getPrimitive("BBAa", Extras.KIND_INT, 0));
+        assertEquals(2, extras.size());
+    }
+
+    @Test
+    public void probeChainWrappingAroundTheTableIsKept() {
+        Extras extras = new Extras();
+        int lastSlot = extras.capacity() - 1;
+        List<String> keys = keysWithHome(lastSlot, lastSlot, 3);
+        for (int i = 0; i < keys.size(); i++) {
+            extras.putReference(keys.get(i), Extras.KIND_STRING, "value" + i);
+        }
+
+        extras.remove(keys.get(0));
+
+        assertEquals("value1", extras.getReference(keys.get(1), Extras.KIND_STRING));
+        assertEquals("value2", extras.getReference(keys.get(2), Extras.KIND_STRING));
+        assertEquals(Extras.KIND_NONE, extras.kindOf(keys.get(0)));
+    }
+
+    @Test
+    public void removedSlotCanBeReused() {
+        Extras extras = new Extras();
+        extras.putPrimitive("AaAa", Extras.KIND_LONG, 1);
+        extras.putPrimitive("AaBB", Extras.KIND_LONG, 2);
+        int capacity = extras.capacity();
+
+        for (int i = 0; i < 100; i++) {
+            extras.remove("AaAa");
+            extras.putPrimitive("AaAa", Extras.KIND_LONG, i);
+        }
+
+        assertEquals(capacity, extras.capacity());
+        assertEquals(99, extras.getPrimitive("AaAa", Extras.KIND_LONG, -1));
+        assertEquals(2, extras.getPrimitive("AaBB", Extras.KIND_LONG, -1));
+    }
+
+    @Test
+    public void remainingKeysAreFoundAfterManyRemovals() {
+        Extras extras = new Extras();
+        for (int i = 0; i < 500; i++) {
+            extras.putPrimitive("key" + i, Extras.KIND_INT, i);
+        }
+        extras.putReference(null, Extras.KIND_STRING, "null key");
+
+        for (int i = 0; i < 500; i += 2) {
+            extras.remove("key" + i);
+        }
+
+        assertEquals(251, extras.size());
+        for (int i = 0; i < 500; i++) {
+            if (i % 2 == 0) {
+                assertFalse(extras.containsKey("key" + i));
+            } else {
+                assertEquals(i, extras.getPrimitive("key" + i, Extras.KIND_INT, -1));
+            }
+        }
+        assertEquals("null key", extras.getReference(null, Extras.KIND_STRING));
+        assertEquals(extras.size(), storedSlots(extras));
+    }
+
+    @Test
+    public void removingMissingKeyChangesNothing() {
+        Extras extras = new Extras();
+        extras.putPrimitive("present", Extras.KIND_BOOLEAN, 1);
+
+        extras.remove("missing");
+
+        assertEquals(1, extras.size());
+        assertTrue(extras.containsKey("present"));
+    }
+
+    /**
+     * @return keys whose probe chain starts at the slot, the same way {@link Extras} hashes them.
+     */
+    private static List<String> keysWithHome(int slot, int mask, int count) {
+        List<String> keys = new ArrayList<>();
+        for (int i = 0; keys.size() < count; i++) {
+            String key = "key" + i;
+            int h = key.hashCode();
+            if (((h ^ (h >>> 16)) & mask) == slot) {
+                keys.add(key);
+            }
+        }
+        return keys;
+    }
+
+    private static int storedSlots(Extras extras) {
+        int stored = 0;
+        for (int i = 0; i < extras.capacity(); i++) {
+            if (extras.kindAt(i) != Extras.KIND_NONE) {
+                stored++;
+            }
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,48 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketsCoverValuesWithBoundedError() {
+        for (long value = 0; value < 1 << 20; value += 7) {
+            assertBucket(value);
+        }
+        assertBucket(Long.MAX_VALUE);
+        assertBucket(1L << 40);
+        assertBucket((1L << 40) - 1);
+    }
+
+    @Test
+    public void percentilesAreWithinPrecision() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+
+        assertEquals(10000, histogram.getCount());
+        assertEquals(10000000, histogram.getMax());
+        assertEquals(5000500, histogram.getMean(), 0.001);
+        assertWithin(5000000, histogram.getValueAtPercentile(50));
+        assertWithin(9900000, histogram.getValueAtPercentile(99));
+        assertEquals(10000000, histogram.getValueAtPercentile(100));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getValueAtPercentile(99));
+    }
+
+    private static void assertBucket(long value) {
+        long highest = Histogram.highestValueOf(Histogram.indexOf(value));
+        assertTrue(value + " above " + highest, value <= highest);
+        assertTrue(value + " far below " + highest, highest - value <= value / 16 + 1);
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue(expected + " vs " + actual, Math.abs(actual - expected) <= expected / 16);
+    }
+}
@@ -0,0 +1,168 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Scheduling through {@link WorkerThread}, where scheduled tasks wait in the timer wheel and
+ * run on the executor.
+ */
+public class ScheduledTaskTest {
+
+    @Test
+    public void delayedTaskRunsOnceAfterTheDelay() throws Exception {
+        CountingTask task = new CountingTask(1);
+        long start = System.nanoTime();
+        TaskHandle handle = WorkerThread.get().schedule(task, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(task.ran.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        awaitDone(handle);
+        assertFalse(handle.isCancelled());
+        assertFalse(handle.cancel(false));
+        assertEquals(1, task.runs.get());
+    }
+
+    @Test
+    public void taskCancelledBeforeTheDelayNeverRuns() throws Exception {
+        CountingTask task = new CountingTask(1);
+        TaskHandle handle = WorkerThread.get().schedule(task, 50, TimeUnit.MILLISECONDS);
+
+        assertTrue(handle.cancel(false));
+        assertFalse(handle.cancel(false));
+        assertTrue(handle.isCancelled());
+        assertTrue(handle.isDone());
+        assertFalse(task.ran.await(150, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void periodicTaskRunsUntilCancelled() throws Exception {
+        CountingTask task = new CountingTask(3);
+        TaskHandle handle = WorkerThread.get().scheduleAtFixedRate(task, 0, 20,
+                TimeUnit.MILLISECONDS);
+
+        assertTrue(task.ran.await(5, TimeUnit.SECONDS));
+        assertTrue(handle.cancel(false));
+        assertTrue(handle.isCancelled());
+        // A run that has already started may still finish.
+        Thread.sleep(50);
+        int runs = task.runs.get();
+        Thread.sleep(100);
+        assertEquals(runs, task.runs.get());
+    }
+
+    @Test
+    public void periodicRunsNeverOverlap() throws Exception {
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final CountDownLatch ran = new CountDownLatch(4);
+        TaskHandle handle = WorkerThread.get().scheduleAtFixedRate(new Runnable() {
+            @Override
+            public void run() {
+                if (running.incrementAndGet() != 1) {
+                    overlapped.set(true);
+                }
+                try {
+                    Thread.sleep(30);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                running.decrementAndGet();
+                ran.countDown();
+            }
+        }, 0, 5, TimeUnit.MILLISECONDS);
+
+        try {
+            assertTrue(ran.await(5, TimeUnit.SECONDS));
+            assertFalse(overlapped.get());
+        } finally {
+            handle.cancel(false);
+        }
+    }
+
+    @Test
+    public void periodicTaskStopsWhenItThrows() throws Exception {
+        final AtomicInteger runs = new AtomicInteger();
+        TaskHandle handle = WorkerThread.get().scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                runs.incrementAndGet();
+                throw new IllegalStateException("Failing task.");
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        awaitDone(handle);
+        Thread.sleep(50);
+        assertEquals(1, runs.get());
+        assertFalse(handle.isCancelled());
+    }
+
+    @Test
+    public void cancellationRacingWithTheTimerRunsEachTaskAtMostOnce() throws Exception {
+        int count = 200;
+        List<CountingTask> tasks = new ArrayList<>(count);
+        final List<TaskHandle> handles = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            CountingTask task = new CountingTask(1);
+            tasks.add(task);
+            handles.add(WorkerThread.get().schedule(task, i % 20, TimeUnit.MILLISECONDS));
+        }
+
+        final boolean[] cancelled = new boolean[count];
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 0; i < handles.size(); i++) {
+                    cancelled[i] = handles.get(i).cancel(false);
+                }
+            }
+        });
+        canceller.start();
+        canceller.join();
+
+        for (int i = 0; i < count; i++) {
+            awaitDone(handles.get(i));
+            if (!cancelled[i]) {
+                // Cancellation failed only because the task had already run.
+                assertTrue(tasks.get(i).ran.await(5, TimeUnit.SECONDS));
+            }
+        }
+        Thread.sleep(50);
+        for (CountingTask task : tasks) {
+            assertTrue(task.runs.get() <= 1);
+        }
+    }
+
+    private static void awaitDone(TaskHandle handle) throws InterruptedException {
+        for (int i = 0; i < 250 && !handle.isDone(); i++) {
+            Thread.sleep(20);
+        }
+        assertTrue(handle.isDone());
+    }
+
+    private static final class CountingTask implements Runnable {
+
+        private final AtomicInteger runs = new AtomicInteger();
+        private final CountDownLatch ran;
+
+        CountingTask(int expectedRuns) {
+            ran = new CountDownLatch(expectedRuns);
+        }
+
+        @Override
+        public void run() {
+            runs.incrementAndGet();
+            ran.countDown();
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Ordered execution through {@link WorkerThread#executeOrdered(Object, Runnable)}.
+ */
+public class SerialLanesTest {
+
+    @Test
+    public void tasksWithTheSameKeyRunOneByOneInOrder() throws Exception {
+        int count = 200;
+        OrderedTasks tasks = new OrderedTasks(count);
+        for (int i = 0; i < count; i++) {
+            WorkerThread.get().executeOrdered("account", tasks.task(i));
+        }
+
+        assertTrue(tasks.done.await(5, TimeUnit.SECONDS));
+        assertFalse(tasks.outOfOrder.get());
+    }
+
+    @Test
+    public void tasksWithDifferentKeysRunInParallel() throws Exception {
+        final CountDownLatch otherStarted = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(1);
+        WorkerThread.get().executeOrdered("first", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    // Waits for a task of the other key, that must not wait for this one.
+                    if (otherStarted.await(5, TimeUnit.SECONDS)) {
+                        done.countDown();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        WorkerThread.get().executeOrdered("second", new Runnable() {
+            @Override
+            public void run() {
+                otherStarted.countDown();
+            }
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void cancelledWaitingTaskDoesNotHoldBackLaterTasks() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean cancelledRan = new AtomicBoolean();
+        final CountDownLatch lastRan = new CountDownLatch(1);
+        WorkerThread.get().executeOrdered("key", new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        });
+        TaskHandle waiting = WorkerThread.get().executeOrdered("key", new Runnable() {
+            @Override
+            public void run() {
+                cancelledRan.set(true);
+            }
+        });
+        WorkerThread.get().executeOrdered("key", new Runnable() {
+            @Override
+            public void run() {
+                lastRan.countDown();
+            }
+        });
+
+        assertTrue(waiting.cancel(false));
+        release.countDown();
+        assertTrue(lastRan.await(5, TimeUnit.SECONDS));
+        assertFalse(cancelledRan.get());
+    }
+
+    @Test
+    public void tasksEnqueuedWhileTheLaneDrainsAreNotLost() throws Exception {
+        final int threads = 4;
+        final int perThread = 500;
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicBoolean overlapped = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(threads * perThread);
+        final Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                if (running.incrementAndGet() != 1) {
+                    overlapped.set(true);
+                }
+                running.decrementAndGet();
+                done.countDown();
+            }
+        };
+
+        // Short tasks drain the lane often, so new tasks race with its removal.
+        Thread[] posters = new Thread[threads];
+        for (int i = 0; i < threads; i++) {
+            posters[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < perThread; j++) {
+                        WorkerThread.get().executeOrdered("key", task);
+                    }
+                }
+            });
+            posters[i].start();
+        }
+        for (Thread poster : posters) {
+            poster.join();
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(0, running.get());
+        assertFalse(overlapped.get());
+    }
+
+    private static final class OrderedTasks {
+
+        private final CountDownLatch done;
+        private final AtomicBoolean outOfOrder = new AtomicBoolean();
+        private final AtomicInteger running = new AtomicInteger();
+        private int next;
+
+        OrderedTasks(int count) {
+            done = new CountDownLatch(count);
+        }
+
+        Runnable task(final int index) {
+            return new Runnable() {
+                @Override
+                public void run() {
+                    if (running.incrementAndGet() != 1 || index != next++) {
+                        outOfOrder.set(true);
+                    }
+                    running.decrementAndGet();
+                    done.countDown();
+                }
+            };
+        }
+    }
+}
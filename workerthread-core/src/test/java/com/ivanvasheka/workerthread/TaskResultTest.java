@@ -0,0 +1,187 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TaskResultTest {
+
+    @Test
+    public void continuationsTransformTheResultInOrder() throws Exception {
+        final AtomicReference<String> mainThread = new AtomicReference<>();
+        TaskResult<String> result = WorkerThread.get()
+                .submit(value(2))
+                .thenOnWorker(new Continuation<Integer, Integer>() {
+                    @Override
+                    public Integer then(Integer value) {
+                        return value * 3;
+                    }
+                })
+                .thenOnMain(new Continuation<Integer, String>() {
+                    @Override
+                    public String then(Integer value) {
+                        mainThread.set(Thread.currentThread().getName());
+                        return "result " + (value + 1);
+                    }
+                });
+
+        assertEquals("result 7", result.await());
+        assertEquals("WorkerThread Main", mainThread.get());
+    }
+
+    @Test
+    public void failureSkipsFollowingStepsAndReachesTheCallback() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("Failing task.");
+        final AtomicBoolean continued = new AtomicBoolean();
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final AtomicReference<Throwable> delivering = new AtomicReference<>();
+        TaskResult<Integer> result = WorkerThread.get()
+                .submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        throw failure;
+                    }
+                })
+                .thenOnWorker(new Continuation<Integer, Integer>() {
+                    @Override
+                    public Integer then(Integer value) {
+                        continued.set(true);
+                        return value;
+                    }
+                })
+                .deliver(new ResultCallback<Integer>() {
+                    @Override
+                    public void onResult(Integer value) {
+                        delivered.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        delivering.set(error);
+                        delivered.countDown();
+                    }
+                });
+
+        try {
+            result.await();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+        assertTrue(result.isFailed());
+        assertFalse(continued.get());
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertSame(failure, delivering.get());
+    }
+
+    @Test
+    public void cancellationReachesFollowingStepsButNotPreviousOnes() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean continued = new AtomicBoolean();
+        TaskResult<Integer> first = WorkerThread.get().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return 1;
+            }
+        });
+        TaskResult<Integer> second = first.thenOnWorker(new Continuation<Integer, Integer>() {
+            @Override
+            public Integer then(Integer value) {
+                continued.set(true);
+                return value;
+            }
+        });
+        TaskResult<Integer> third = second.thenOnWorker(new Continuation<Integer, Integer>() {
+            @Override
+            public Integer then(Integer value) {
+                return value;
+            }
+        });
+
+        assertTrue(second.cancel(false));
+        assertFalse(second.cancel(false));
+        assertTrue(third.isCancelled());
+        try {
+            third.await();
+            fail();
+        } catch (CancellationException expected) {
+            // Passed down the chain.
+        }
+
+        release.countDown();
+        assertEquals(Integer.valueOf(1), first.await());
+        Thread.sleep(50);
+        assertFalse(continued.get());
+    }
+
+    @Test
+    public void combinedResultWaitsForBothResults() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        TaskResult<Integer> slow = WorkerThread.get().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() throws Exception {
+                release.await(5, TimeUnit.SECONDS);
+                return 40;
+            }
+        });
+        TaskResult<Integer> combined = slow.combine(WorkerThread.get().submit(value(2)),
+                new Combiner<Integer, Integer, Integer>() {
+                    @Override
+                    public Integer combine(Integer first, Integer second) {
+                        return first + second;
+                    }
+                });
+
+        Thread.sleep(50);
+        assertFalse(combined.isDone());
+        release.countDown();
+        assertEquals(Integer.valueOf(42), combined.await());
+    }
+
+    @Test
+    public void combinedResultFailsWhenOneOfResultsFails() throws Exception {
+        final IllegalStateException failure = new IllegalStateException("Failing task.");
+        TaskResult<Integer> failing = WorkerThread.get().submit(new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                throw failure;
+            }
+        });
+        TaskResult<Integer> combined = WorkerThread.get().submit(value(1)).combine(failing,
+                new Combiner<Integer, Integer, Integer>() {
+                    @Override
+                    public Integer combine(Integer first, Integer second) {
+                        return first + second;
+                    }
+                });
+
+        try {
+            combined.await();
+            fail();
+        } catch (ExecutionException e) {
+            assertSame(failure, e.getCause());
+        }
+    }
+
+    private static Callable<Integer> value(final int value) {
+        return new Callable<Integer>() {
+            @Override
+            public Integer call() {
+                return value;
+            }
+        };
+    }
+}
@@ -0,0 +1,120 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TimerWheelTest {
+
+    private static final long TICK_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+    private static final long TURN_NANOS = 512 * TICK_NANOS;
+
+    @Test
+    public void timeoutFiresNotBeforeItsDelay() throws Exception {
+        TimerWheel timer = new TimerWheel();
+        CountDownLatch fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.schedule(new CountDown(fired), TimeUnit.MILLISECONDS.toNanos(50));
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    public void cancelledTimeoutDoesNotFire() throws Exception {
+        TimerWheel timer = new TimerWheel();
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = timer.schedule(new CountDown(fired),
+                TimeUnit.MILLISECONDS.toNanos(30));
+
+        assertTrue(timeout.cancel());
+        assertFalse(timeout.cancel());
+        assertFalse(fired.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void firedTimeoutCanNotBeCancelled() throws Exception {
+        TimerWheel timer = new TimerWheel();
+        CountDownLatch fired = new CountDownLatch(1);
+        TimerWheel.Timeout timeout = timer.schedule(new CountDown(fired), 0);
+
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertFalse(timeout.cancel());
+    }
+
+    @Test
+    public void everyTimeoutEitherFiresOrIsCancelled() throws Exception {
+        final TimerWheel timer = new TimerWheel();
+        final int count = 2000;
+        final AtomicInteger fired = new AtomicInteger();
+        final List<TimerWheel.Timeout> timeouts = new ArrayList<>(count);
+        Runnable target = new Runnable() {
+            @Override
+            public void run() {
+                fired.incrementAndGet();
+            }
+        };
+        for (int i = 0; i < count; i++) {
+            timeouts.add(timer.schedule(target, TimeUnit.MILLISECONDS.toNanos(i % 20)));
+        }
+
+        // Cancels while the timer thread fires the same timeouts.
+        final AtomicInteger cancelled = new AtomicInteger();
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (TimerWheel.Timeout timeout : timeouts) {
+                    if (timeout.cancel()) {
+                        cancelled.incrementAndGet();
+                    }
+                }
+            }
+        });
+        canceller.start();
+        canceller.join();
+        for (int i = 0; i < 100 && fired.get() + cancelled.get() < count; i++) {
+            Thread.sleep(20);
+        }
+
+        assertEquals(count, fired.get() + cancelled.get());
+    }
+
+    @Test
+    public void timeoutInTheSameBucketWaitsForItsTurnOfTheWheel() throws Exception {
+        TimerWheel timer = new TimerWheel();
+        CountDownLatch near = new CountDownLatch(1);
+        CountDownLatch far = new CountDownLatch(1);
+        long delay = TimeUnit.MILLISECONDS.toNanos(100);
+        long start = System.nanoTime();
+        // A full turn later, so both land in the same bucket.
+        timer.schedule(new CountDown(far), delay + TURN_NANOS);
+        timer.schedule(new CountDown(near), delay);
+
+        assertTrue(near.await(5, TimeUnit.SECONDS));
+        assertEquals(1, far.getCount());
+        assertTrue(far.await(10, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= delay + TURN_NANOS);
+    }
+
+    private static final class CountDown implements Runnable {
+
+        private final CountDownLatch latch;
+
+        CountDown(CountDownLatch latch) {
+            this.latch = latch;
+        }
+
+        @Override
+        public void run() {
+            latch.countDown();
+        }
+    }
+}
@@ -0,0 +1,444 @@
+package com.ivanvasheka.workerthread;
+
+import org.junit.Test;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Runs the core on a plain JVM, where main thread deliveries go to the event loop thread.
+ */
+public class WorkerThreadTest {
+
+    @Test
+    public void postedEventIsDeliveredOnMainThreadDispatcher() throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final AtomicReference<String> thread = new AtomicReference<>();
+        final AtomicReference<Integer> number = new AtomicReference<>();
+        EventListener listener = new EventListener() {
+            @Override
+            public void onEvent(Event event) {
+                thread.set(Thread.currentThread().getName());
+                number.set(event.getInt());
+                delivered.countDown();
+            }
+        };
+
+        WorkerThread.get().subscribe(listener);
+        try {
+            Event.to(listener.getClass()).withNumber(42).post();
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("WorkerThread Main", thread.get());
+            assertEquals(Integer.valueOf(42), number.get());
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void storedEventIsDeliveredAfterSubscription() throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        StoredEventListener listener = new StoredEventListener(delivered);
+
+        Event.to(StoredEventListener.class).withMessage("stored").post();
+        assertTrue(WorkerThread.get().hasEvent(listener));
+
+        WorkerThread.get().subscribe(listener);
+        try {
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("stored", listener.message);
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void submittedResultIsDeliveredToCallback() throws Exception {
+        final CountDownLatch delivered = new CountDownLatch(1);
+        final AtomicReference<String> result = new AtomicReference<>();
+
+        WorkerThread.get()
+                .submit(new Callable<Integer>() {
+                    @Override
+                    public Integer call() {
+                        return 20;
+                    }
+                })
+                .thenOnWorker(new Continuation<Integer, String>() {
+                    @Override
+                    public String then(Integer value) {
+                        return "result " + (value + 1);
+                    }
+                })
+                .deliver(new ResultCallback<String>() {
+                    @Override
+                    public void onResult(String value) {
+                        result.set(value);
+                        delivered.countDown();
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        delivered.countDown();
+                    }
+                });
+
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertEquals("result 21", result.get());
+    }
+
+    @Test
+    public void typedSubscriberReceivesOnlyEventsOfItsClasses() throws Exception {
+        final List<Event> received = Collections.synchronizedList(new ArrayList<Event>());
+        final CountDownLatch delivered = new CountDownLatch(2);
+        EventListener listener = new EventListener() {
+            @Override
+            public void onEvent(Event event) {
+                received.add(event);
+                delivered.countDown();
+            }
+        };
+
+        WorkerThread.get().subscribe(listener, ProgressEvent.class);
+        try {
+            Event.to(listener.getClass()).withNumber(1).post();
+            Event.toEveryone().withNumber(2).post();
+            WorkerThread.get().post(new ProgressEvent());
+            WorkerThread.get().post(new DetailedProgressEvent());
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals(2, received.size());
+            assertTrue(received.get(0) instanceof ProgressEvent);
+            assertTrue(received.get(1) instanceof DetailedProgressEvent);
+            assertTrue(!WorkerThread.get().hasEvent(listener));
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void weakSubscriberStopsReceivingEventsWhenCollected() throws Exception {
+        AtomicInteger received = new AtomicInteger();
+        CountDownLatch delivered = new CountDownLatch(1);
+        CountingListener listener = new CountingListener(received, delivered);
+        WorkerThread.get().subscribeWeakly(listener);
+
+        Event.to(CountingListener.class).withNumber(1).post();
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+
+        WeakReference<CountingListener> reference = new WeakReference<>(listener);
+        listener = null;
+        for (int i = 0; i < 50 && reference.get() != null; i++) {
+            System.gc();
+            Thread.sleep(20);
+        }
+        assertTrue(reference.get() == null);
+
+        // Pruned, so the event waits for the next subscriber instead of being delivered.
+        Event.to(CountingListener.class).withNumber(2).post();
+        assertEquals(1, received.get());
+        assertTrue(WorkerThread.get().hasEvent(new CountingListener(received, delivered)));
+        WorkerThread.get().invalidate(CountingListener.class);
+    }
+
+    @Test
+    public void failingSubscriberDoesNotStopLaterDeliveries() throws Exception {
+        FailingListener failing = new FailingListener();
+        Event.to(FailingListener.class).useSourceThread().post();
+        try {
+            WorkerThread.get().subscribe(failing);
+            fail("Failure of the subscriber should reach the caller.");
+        } catch (IllegalStateException expected) {
+            // Delivered from the store while subscribing.
+        } finally {
+            WorkerThread.get().unsubscribe(failing);
+        }
+
+        CountDownLatch delivered = new CountDownLatch(1);
+        StoredEventListener listener = new StoredEventListener(delivered);
+        Event.to(StoredEventListener.class).withMessage("after failure").post();
+        WorkerThread.get().subscribe(listener);
+        try {
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("after failure", listener.message);
+            assertFalse(WorkerThread.get().hasEvent(listener));
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void subscriberWithExecutorReceivesEventsInOrderOnTheExecutor() throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        OrderedListener listener = new OrderedListener(200);
+        WorkerThread.get().subscribe(listener, executor);
+        try {
+            for (int i = 0; i < 200; i++) {
+                Event.Builder event = Event.to(OrderedListener.class).withNumber(i);
+                if (i % 2 == 0) {
+                    event.useSourceThread();
+                }
+                event.post();
+            }
+
+            assertTrue(listener.delivered.await(5, TimeUnit.SECONDS));
+            assertFalse(listener.outOfOrder);
+            assertFalse(listener.onOtherThread);
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void deliveriesRejectedByExecutorAreDropped() {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        executor.shutdown();
+        AtomicInteger received = new AtomicInteger();
+        CountingListener listener = new CountingListener(received, new CountDownLatch(1));
+        WorkerThread.get().subscribe(listener, executor);
+        try {
+            Event event = Event.obtain(CountingListener.class);
+            event.setMessage("rejected");
+
+            assertTrue(WorkerThread.get().post(event));
+            // Released by the dropped delivery, so the pooled event is recycled.
+            assertNull(event.getMessage());
+            assertEquals(0, received.get());
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    @Test
+    public void fullDeliveryQueueRejectsEventPostedBehindStoredEvents() {
+        final List<Runnable> handed = Collections.synchronizedList(new ArrayList<Runnable>());
+        WorkerThread workerThread = new WorkerThread(Config.builder()
+                .withMainThreadDispatcher(new MainThreadDispatcher() {
+                    @Override
+                    public void execute(Runnable runnable) {
+                        handed.add(runnable);
+                    }
+
+                    @Override
+                    public boolean isDispatchThread() {
+                        return false;
+                    }
+                })
+                .withDeliveryQueue(1, Config.OVERFLOW_DROP_NEWEST)
+                .build());
+        workerThread.subscribe(new CountingListener(new AtomicInteger(), new CountDownLatch(1)));
+        // Nobody receives it, so later events wait behind it in the store.
+        workerThread.post(new Event(StoredEventListener.class));
+
+        assertTrue(workerThread.post(new Event(CountingListener.class)));
+        assertFalse(workerThread.post(new Event(CountingListener.class)));
+        assertEquals(1, handed.size());
+    }
+
+    @Test
+    public void droppedStoredEventsAreCountedWithoutMetricsSink() throws Exception {
+        WorkerThread workerThread = new WorkerThread(Config.builder()
+                .withStoredEventLimits(1, 0)
+                .withStoredEventTtl(20)
+                .build());
+        workerThread.post(new Event(StoredEventListener.class));
+        workerThread.post(new Event(StoredEventListener.class));
+        workerThread.post(new Event(StoredEventListener.class));
+
+        assertEquals(2, workerThread.getEvictedEventCount());
+        // Counts are kept when nobody consumes them.
+        assertEquals(2, workerThread.getEvictedEventCount());
+
+        Thread.sleep(50);
+        assertEquals(1, workerThread.getExpiredEventCount());
+        assertEquals(1, workerThread.getExpiredEventCount());
+        assertFalse(workerThread.hasEvent(new StoredEventListener(new CountDownLatch(1))));
+    }
+
+    @Test
+    public void demotedDeliveriesWaitForMainThreadWithoutHoldingWorkers() throws Exception {
+        final List<Runnable> handed = Collections.synchronizedList(new ArrayList<Runnable>());
+        final AtomicReference<Runnable> demoteWhileDispatching = new AtomicReference<>();
+        MainThreadDispatcher mainThread = new MainThreadDispatcher() {
+            @Override
+            public void execute(Runnable runnable) {
+                Runnable demote = demoteWhileDispatching.getAndSet(null);
+                if (demote != null) {
+                    demote.run();
+                }
+                handed.add(runnable);
+            }
+
+            @Override
+            public boolean isDispatchThread() {
+                return false;
+            }
+        };
+        // A single worker, which must stay free while the main thread is busy.
+        final WorkerThread workerThread = new WorkerThread(Config.builder()
+                .withCorePoolSize(1)
+                .withMaxPoolSize(1)
+                .withQueueType(Config.QUEUE_FIFO)
+                .withMainThreadDispatcher(mainThread)
+                .withSlowDeliveryThreshold(5)
+                .withSlowSubscriberDemotion(1)
+                .build());
+        final Subscription subscription = new Subscription(new CountingListener(
+                new AtomicInteger(), new CountDownLatch(1)));
+        final List<String> delivered = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch demotedDelivered = new CountDownLatch(1);
+
+        // Demoted by another thread while this one hands its delivery to the main thread.
+        demoteWhileDispatching.set(new Runnable() {
+            @Override
+            public void run() {
+                workerThread.demote(subscription);
+            }
+        });
+        subscription.execute(mainThread, new Runnable() {
+            @Override
+            public void run() {
+                delivered.add("handed");
+            }
+        });
+        subscription.execute(mainThread, new Runnable() {
+            @Override
+            public void run() {
+                delivered.add("demoted");
+                demotedDelivered.countDown();
+            }
+        });
+        final CountDownLatch workerRan = new CountDownLatch(1);
+        workerThread.execute(new Runnable() {
+            @Override
+            public void run() {
+                workerRan.countDown();
+            }
+        });
+
+        assertTrue(workerRan.await(5, TimeUnit.SECONDS));
+        // The earlier delivery, then the marker that releases the demoted ones.
+        assertEquals(2, handed.size());
+        assertTrue(delivered.isEmpty());
+        for (Runnable runnable : new ArrayList<>(handed)) {
+            runnable.run();
+        }
+        assertTrue(demotedDelivered.await(5, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("handed", "demoted"), delivered);
+    }
+
+    @Test
+    public void builtEventIsNotRecycledAfterDelivery() throws Exception {
+        final List<Event> kept = Collections.synchronizedList(new ArrayList<Event>());
+        final CountDownLatch delivered = new CountDownLatch(2);
+        EventListener listener = new EventListener() {
+            @Override
+            public void onEvent(Event event) {
+                kept.add(event);
+                delivered.countDown();
+            }
+        };
+
+        WorkerThread.get().subscribe(listener);
+        try {
+            Event.to(listener.getClass()).withMessage("kept").post();
+            // Main thread deliveries run in order, the first event is released before the second.
+            Event.to(listener.getClass()).post();
+
+            assertTrue(delivered.await(5, TimeUnit.SECONDS));
+            assertEquals("kept", kept.get(0).getMessage());
+        } finally {
+            WorkerThread.get().unsubscribe(listener);
+        }
+    }
+
+    private static class ProgressEvent extends Event {
+    }
+
+    private static final class DetailedProgressEvent extends ProgressEvent {
+    }
+
+    private static final class StoredEventListener implements EventListener {
+
+        private final CountDownLatch delivered;
+        private volatile String message;
+
+        StoredEventListener(CountDownLatch delivered) {
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            message = event.getMessage();
+            delivered.countDown();
+        }
+    }
+
+    private static final class CountingListener implements EventListener {
+
+        private final AtomicInteger received;
+        private final CountDownLatch delivered;
+
+        CountingListener(AtomicInteger received, CountDownLatch delivered) {
+            this.received = received;
+            this.delivered = delivered;
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            received.incrementAndGet();
+            delivered.countDown();
+        }
+    }
+
+    private static final class FailingListener implements EventListener {
+
+        @Override
+        public void onEvent(Event event) {
+            throw new IllegalStateException("Failing subscriber.");
+        }
+    }
+
+    private static final class OrderedListener implements EventListener {
+
+        private final CountDownLatch delivered;
+        private final AtomicInteger running = new AtomicInteger();
+        private int next;
+        private volatile boolean outOfOrder;
+        private volatile boolean onOtherThread;
+
+        OrderedListener(int count) {
+            delivered = new CountDownLatch(count);
+        }
+
+        @Override
+        public void onEvent(Event event) {
+            if (running.incrementAndGet() != 1 || event.getInt() != next++) {
+                outOfOrder = true;
+            }
+            if (!Thread.currentThread().getName().startsWith("pool-")) {
+                onOtherThread = true;
+            }
+            running.decrementAndGet();
+            delivered.countDown();
+        }
+    }
+}
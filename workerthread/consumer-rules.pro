@@ -0,0 +1,5 @@
+# Platform implementation is looked up with ServiceLoader.
+-keepnames class com.ivanvasheka.workerthread.Platform
+-keep class com.ivanvasheka.workerthread.AndroidPlatform {
+    public <init>();
+}
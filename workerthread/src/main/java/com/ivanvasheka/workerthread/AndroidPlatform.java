@@ -0,0 +1,42 @@
+package com.ivanvasheka.workerthread;
+
+import android.os.Build;
+import android.os.Process;
+import android.os.Trace;
+import android.support.annotation.NonNull;
+
+/**
+ * Android platform: main thread deliveries go to the main Looper, thread priorities are applied
+ * with {@link Process#setThreadPriority(int)}, trace sections go to {@link Trace} on API 18 and
+ * above. Registered in META-INF/services.
+ */
+public final class AndroidPlatform extends Platform {
+
+    private static final int MAX_SECTION_NAME_LENGTH = 127;
+
+    @NonNull
+    @Override
+    public MainThreadDispatcher createMainThreadDispatcher() {
+        return LooperDispatcher.getMain();
+    }
+
+    @Override
+    public void setThreadPriority(int priority) {
+        Process.setThreadPriority(priority);
+    }
+
+    @Override
+    public void beginTraceSection(@NonNull String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.beginSection(name.length() > MAX_SECTION_NAME_LENGTH
+                    ? name.substring(0, MAX_SECTION_NAME_LENGTH) : name);
+        }
+    }
+
+    @Override
+    public void endTraceSection() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2) {
+            Trace.endSection();
+        }
+    }
+}
@@ -0,0 +1,161 @@
+package com.ivanvasheka.workerthread;
+
+import android.os.Bundle;
+import android.os.Parcelable;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+import java.io.Serializable;
+
+/**
+ * Android specific extras of {@link Event}: conversion to and from {@link Bundle} and
+ * {@link Parcelable} values.
+ */
+public final class EventBundles {
+
+    private EventBundles() {
+    }
+
+    /**
+     * Returns a copy of the event extras as a Bundle. Changes of the Bundle are not reflected
+     * in the event, use {@link #putAll(Event, Bundle)} to write them back. Object extras are
+     * put as Parcelable, CharSequence, arrays of them, or Serializable values, which include
+     * arrays of primitives and strings, lists and maps.
+     *
+     * @param event with extras.
+     * @return extras, or null if there are none.
+     * @throws IllegalArgumentException if an object extra is of a type that a Bundle can not hold.
+     */
+    @Nullable
+    public static Bundle getExtra(@NonNull Event event) {
+        Extras extras = event.getExtras();
+        if (extras == null || extras.isEmpty()) {
+            return null;
+        }
+
+        Bundle bundle = new Bundle();
+        for (int i = 0; i < extras.capacity(); i++) {
+            String key = extras.keyAt(i);
+            long value = extras.primitiveAt(i);
+            switch (extras.kindAt(i)) {
+                case Extras.KIND_BOOLEAN:
+                    bundle.putBoolean(key, value != 0);
+                    break;
+                case Extras.KIND_BYTE:
+                    bundle.putByte(key, (byte) value);
+                    break;
+                case Extras.KIND_CHAR:
+                    bundle.putChar(key, (char) value);
+                    break;
+                case Extras.KIND_SHORT:
+                    bundle.putShort(key, (short) value);
+                    break;
+                case Extras.KIND_INT:
+                    bundle.putInt(key, (int) value);
+                    break;
+                case Extras.KIND_LONG:
+                    bundle.putLong(key, value);
+                    break;
+                case Extras.KIND_FLOAT:
+                    bundle.putFloat(key, Float.intBitsToFloat((int) value));
+                    break;
+                case Extras.KIND_DOUBLE:
+                    bundle.putDouble(key, Double.longBitsToDouble(value));
+                    break;
+                case Extras.KIND_STRING:
+                    bundle.putString(key, (String) extras.referenceAt(i));
+                    break;
+                case Extras.KIND_CHAR_SEQUENCE:
+                    bundle.putCharSequence(key, (CharSequence) extras.referenceAt(i));
+                    break;
+                case Extras.KIND_OBJECT:
+                    putObject(bundle, key, extras.referenceAt(i));
+                    break;
+            }
+        }
+        return bundle;
+    }
+
+    private static void putObject(Bundle bundle, String key, @Nullable Object value) {
+        if (value == null || value instanceof Parcelable) {
+            bundle.putParcelable(key, (Parcelable) value);
+        } else if (value instanceof Parcelable[]) {
+            bundle.putParcelableArray(key, (Parcelable[]) value);
+        } else if (value instanceof CharSequence) {
+            bundle.putCharSequence(key, (CharSequence) value);
+        } else if (value instanceof CharSequence[] && !(value instanceof String[])) {
+            bundle.putCharSequenceArray(key, (CharSequence[]) value);
+        } else if (value instanceof Serializable) {
+            bundle.putSerializable(key, (Serializable) value);
+        } else {
+            throw new IllegalArgumentException("Extra " + key + " of "
+                    + value.getClass().getName() + " can not be put into a Bundle.");
+        }
+    }
+
+    /**
+     * Adds all values of the Bundle to the event extras, replacing existing values with the same
+     * keys. Values other than primitives and char sequences are added as objects.
+     *
+     * @param event  to receive extras.
+     * @param bundle with values, or null.
+     */
+    public static void putAll(@NonNull Event event, @Nullable Bundle bundle) {
+        if (bundle == null) {
+            return;
+        }
+
+        for (String key : bundle.keySet()) {
+            Object value = bundle.get(key);
+            if (value instanceof Boolean) {
+                event.putExtra(key, (boolean) (Boolean) value);
+            } else if (value instanceof Byte) {
+                event.putExtra(key, (byte) (Byte) value);
+            } else if (value instanceof Character) {
+                event.putExtra(key, (char) (Character) value);
+            } else if (value instanceof Short) {
+                event.putExtra(key, (short) (Short) value);
+            } else if (value instanceof Integer) {
+                event.putExtra(key, (int) (Integer) value);
+            } else if (value instanceof Long) {
+                event.putExtra(key, (long) (Long) value);
+            } else if (value instanceof Float) {
+                event.putExtra(key, (float) (Float) value);
+            } else if (value instanceof Double) {
+                event.putExtra(key, (double) (Double) value);
+            } else if (value instanceof String) {
+                event.putExtra(key, (String) value);
+            } else if (value instanceof CharSequence) {
+                event.putExtra(key, (CharSequence) value);
+            } else {
+                event.putObjectExtra(key, value);
+            }
+        }
+    }
+
+    /**
+     * Adds a Parcelable value to the event extras, replacing any existing value for the given key.
+     *
+     * @param event to receive the value.
+     * @param key   a String or null
+     * @param value a Parcelable or null
+     */
+    public static void putParcelableExtra(@NonNull Event event, String key,
+                                          @Nullable Parcelable value) {
+        event.putObjectExtra(key, value);
+    }
+
+    /**
+     * Returns the Parcelable value associated with the given key.
+     *
+     * @param event with extras.
+     * @param key   a String or null
+     * @return a Parcelable value or null
+     */
+    @Nullable
+    public static <E extends Parcelable> E getParcelableExtra(@NonNull Event event, String key) {
+        Object value = event.getObjectExtra(key);
+        //noinspection unchecked
+        return value instanceof Parcelable ? (E) value : null;
+    }
+}
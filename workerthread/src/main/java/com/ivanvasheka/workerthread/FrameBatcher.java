@@ -0,0 +1,143 @@
+package com.ivanvasheka.workerthread;
+
+import android.annotation.TargetApi;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.view.Choreographer;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs posted runnables on the looper thread in batches, one batch per frame, instead of sending
+ * a separate message for each of them. Batch stops when its time budget is exceeded, the rest
+ * of the runnables are carried to the next frame.
+ * <p>
+ * On API levels without {@link Choreographer} batches are scheduled with plain messages. The frame
+ * callback is a separate class, loaded only on API 16 and above, so this class can be loaded on
+ * any API level.
+ */
+final class FrameBatcher implements Runnable {
+
+    private final Handler handler;
+    private final ConcurrentLinkedQueue<Runnable> queue;
+    private final AtomicBoolean scheduled;
+    private final Runnable runNext = new Runnable() {
+        @Override
+        public void run() {
+            Runnable runnable = queue.poll();
+            if (runnable != null) {
+                runnable.run();
+            }
+        }
+    };
+
+    private volatile long budgetNanos;
+    // Created and used only on the looper thread.
+    private FrameCallback frameCallback;
+
+    FrameBatcher(@NonNull Looper looper, long budgetMillis) {
+        handler = new Handler(looper);
+        queue = new ConcurrentLinkedQueue<>();
+        scheduled = new AtomicBoolean();
+        setBudget(budgetMillis);
+    }
+
+    void setBudget(long budgetMillis) {
+        budgetNanos = TimeUnit.MILLISECONDS.toNanos(budgetMillis);
+    }
+
+    /**
+     * Adds the runnable to the next batch. Can be called from any thread.
+     *
+     * @param runnable to run on the looper thread.
+     */
+    void post(@NonNull Runnable runnable) {
+        queue.offer(runnable);
+        if (scheduled.compareAndSet(false, true)) {
+            // Through a message, so the batch starts after messages that are already queued.
+            handler.post(this);
+        }
+    }
+
+    /**
+     * Adds the runnable after the batched ones, and sends a message that runs the oldest one,
+     * used while batching is disabled. Runnables share one queue whether they are batched or not,
+     * so they run in the order they were posted when batching is switched on or off.
+     *
+     * @param runnable to run on the looper thread.
+     */
+    void postNow(@NonNull Runnable runnable) {
+        queue.offer(runnable);
+        handler.post(runNext);
+    }
+
+    /**
+     * Called on the looper thread when a batch was requested.
+     */
+    @Override
+    public void run() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            runBatch();
+        }
+    }
+
+    private void runBatch() {
+        long deadline = System.nanoTime() + budgetNanos;
+        try {
+            Runnable runnable;
+            while ((runnable = queue.poll()) != null) {
+                runnable.run();
+                if (System.nanoTime() >= deadline) {
+                    break;
+                }
+            }
+        } finally {
+            if (!queue.isEmpty()) {
+                scheduleNextFrame();
+            } else {
+                scheduled.set(false);
+                // Runnable could be added after the queue was checked but before the flag was reset.
+                if (!queue.isEmpty() && scheduled.compareAndSet(false, true)) {
+                    scheduleNextFrame();
+                }
+            }
+        }
+    }
+
+    private void scheduleNextFrame() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+            postFrameCallback();
+        } else {
+            handler.post(this);
+        }
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private void postFrameCallback() {
+        if (frameCallback == null) {
+            frameCallback = new FrameCallback(this);
+        }
+        Choreographer.getInstance().postFrameCallback(frameCallback);
+    }
+
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallback implements Choreographer.FrameCallback {
+
+        private final FrameBatcher batcher;
+
+        FrameCallback(FrameBatcher batcher) {
+            this.batcher = batcher;
+        }
+
+        @Override
+        public void doFrame(long frameTimeNanos) {
+            batcher.runBatch();
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.ivanvasheka.workerthread;
+
+import android.net.LocalServerSocket;
+import android.net.LocalSocket;
+import android.net.LocalSocketAddress;
+import android.os.Process;
+import android.support.annotation.NonNull;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * {@link EventBridge.Connection} over a Unix domain socket in the abstract namespace, to bridge
+ * events between processes of the app. One process listens, the other one connects:
+ * <pre>
+ * // :sync process
+ * LocalServerSocket server = new LocalServerSocket("com.example.events");
+ * EventBridge.builder(LocalSocketConnection.accept(server)).build().start();
+ *
+ * // UI process
+ * EventBridge.builder(LocalSocketConnection.connect("com.example.events")).build().start();
+ * </pre>
+ * Names in the abstract namespace are visible to other apps, so {@link #connect(String)} and
+ * {@link #accept(LocalServerSocket)} only accept a peer that runs with the uid of this app.
+ */
+public final class LocalSocketConnection implements EventBridge.Connection {
+
+    private final LocalSocket socket;
+
+    public LocalSocketConnection(@NonNull LocalSocket socket) {
+        this.socket = socket;
+    }
+
+    /**
+     * @param name of the socket, prefixing it with the package name avoids clashes with other
+     *             apps.
+     * @return connection to the process that listens on the socket.
+     * @throws IOException if the process that listens runs with another uid.
+     */
+    @NonNull
+    public static LocalSocketConnection connect(@NonNull String name) throws IOException {
+        LocalSocket socket = new LocalSocket();
+        try {
+            socket.connect(new LocalSocketAddress(name));
+            checkPeer(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return new LocalSocketConnection(socket);
+    }
+
+    /**
+     * Blocks until a peer connects, so it should not be called in the main thread.
+     *
+     * @param server socket that listens for the peer.
+     * @return connection to the peer.
+     * @throws IOException if the peer runs with another uid.
+     */
+    @NonNull
+    public static LocalSocketConnection accept(@NonNull LocalServerSocket server)
+            throws IOException {
+        LocalSocket socket = server.accept();
+        try {
+            checkPeer(socket);
+        } catch (IOException e) {
+            socket.close();
+            throw e;
+        }
+        return new LocalSocketConnection(socket);
+    }
+
+    private static void checkPeer(LocalSocket socket) throws IOException {
+        int uid = socket.getPeerCredentials().getUid();
+        if (uid != Process.myUid()) {
+            throw new IOException("Peer with uid " + uid + " is not of this app.");
+        }
+    }
+
+    @NonNull
+    @Override
+    public InputStream getInputStream() throws IOException {
+        return socket.getInputStream();
+    }
+
+    @NonNull
+    @Override
+    public OutputStream getOutputStream() throws IOException {
+        return socket.getOutputStream();
+    }
+
+    @Override
+    public void close() throws IOException {
+        socket.close();
+    }
+}
@@ -0,0 +1,109 @@
+package com.ivanvasheka.workerthread;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.support.annotation.NonNull;
+import android.support.annotation.Nullable;
+
+/**
+ * Dispatcher that runs main thread deliveries on a {@link Looper}, the main one by default.
+ * <p>
+ * Deliveries can be batched per frame, see {@link #setFrameBatching(boolean)}.
+ * <p>
+ * A dispatcher of any Looper can also be passed to
+ * {@link WorkerThread#subscribe(Object, java.util.concurrent.Executor)}, so events are delivered
+ * to that subscriber on the Looper thread, for example of a HandlerThread.
+ */
+public final class LooperDispatcher implements MainThreadDispatcher {
+
+    /**
+     * Default time budget of a single frame batch, see {@link #setFrameBudget(long)}.
+     */
+    public static final long DEFAULT_FRAME_BUDGET_MS = 4;
+
+    private static volatile LooperDispatcher main;
+
+    private final Handler handler;
+    // Created when frame batching is enabled for the first time.
+    @Nullable
+    private volatile FrameBatcher frameBatcher;
+    private volatile long frameBudgetMillis = DEFAULT_FRAME_BUDGET_MS;
+    private volatile boolean frameBatching;
+
+    public LooperDispatcher(@NonNull Looper looper) {
+        handler = new Handler(looper);
+    }
+
+    /**
+     * @return dispatcher of the main Looper, which is used by {@link WorkerThread} by default.
+     */
+    @NonNull
+    public static LooperDispatcher getMain() {
+        if (main == null) {
+            synchronized (LooperDispatcher.class) {
+                if (main == null) {
+                    main = new LooperDispatcher(Looper.getMainLooper());
+                }
+            }
+        }
+
+        return main;
+    }
+
+    @Override
+    public void execute(@NonNull Runnable runnable) {
+        FrameBatcher batcher = frameBatcher;
+        if (batcher == null) {
+            handler.post(runnable);
+        } else if (frameBatching) {
+            batcher.post(runnable);
+        } else {
+            // Still through the batcher, so runnables batched earlier do not fall behind.
+            batcher.postNow(runnable);
+        }
+    }
+
+    @Override
+    public boolean isDispatchThread() {
+        return Looper.myLooper() == handler.getLooper();
+    }
+
+    /**
+     * Enables or disables batched delivery of main thread events. When enabled, events are not
+     * posted to the main thread one by one, but collected and delivered once per frame within
+     * the frame budget. Events that did not fit into the budget are delivered in the next frame.
+     * Disabled by default. Events keep their order when batching is switched on or off.
+     *
+     * @param enabled <b>true</b> to deliver main thread events in batches.
+     */
+    public void setFrameBatching(boolean enabled) {
+        if (enabled && frameBatcher == null) {
+            synchronized (this) {
+                if (frameBatcher == null) {
+                    frameBatcher = new FrameBatcher(handler.getLooper(), frameBudgetMillis);
+                }
+            }
+        }
+        frameBatching = enabled;
+    }
+
+    /**
+     * Sets the time that single batch of main thread events may take, if frame batching is enabled.
+     *
+     * @param budgetMillis time budget in milliseconds, {@link #DEFAULT_FRAME_BUDGET_MS} by default.
+     * @see #setFrameBatching(boolean)
+     */
+    public void setFrameBudget(long budgetMillis) {
+        if (budgetMillis <= 0) {
+            throw new IllegalArgumentException("Frame budget must be positive.");
+        }
+
+        synchronized (this) {
+            frameBudgetMillis = budgetMillis;
+            FrameBatcher batcher = frameBatcher;
+            if (batcher != null) {
+                batcher.setBudget(budgetMillis);
+            }
+        }
+    }
+}